@@ -0,0 +1,132 @@
+package org.example;
+
+import com.github.gumtreediff.actions.model.Action;
+import com.github.gumtreediff.tree.Tree;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * One edit action of a report entry: its kind and the Lisp trees of the node and of both file roots.
+ * Actions of a fresh diff keep the GumTree node and serialize it only when a tree string is asked
+ * for (the roots once per edit script, shared by all its actions); actions read back from a report
+ * or the edit-script cache have the strings and no node.
+ */
+public final class ActionEntry {
+
+    /** The two roots of one edit script, serialized on first use. */
+    static final class Roots {
+        private final Tree src;
+        private final Tree dst;
+        // racing threads at worst serialize twice; the strings are equal
+        private String before;
+        private String after;
+
+        Roots(Tree src, Tree dst) {
+            this.src = src;
+            this.dst = dst;
+        }
+
+        String before() {
+            if (before == null) before = Serializers.toLisp(src);
+            return before;
+        }
+
+        String after() {
+            if (after == null) after = Serializers.toLisp(dst);
+            return after;
+        }
+    }
+
+    private final String action;
+    private final Tree node;
+    private final Roots roots;
+    private String nodeTree;
+    private final String treeBefore;
+    private final String treeAfter;
+
+    ActionEntry(String action, String nodeTree, String treeBefore, String treeAfter) {
+        this.action = action;
+        this.node = null;
+        this.roots = null;
+        this.nodeTree = nodeTree;
+        this.treeBefore = treeBefore;
+        this.treeAfter = treeAfter;
+    }
+
+    ActionEntry(Action a, Roots roots) {
+        this.action = a.getClass().getSimpleName();
+        this.node = a.getNode();
+        this.roots = roots;
+        this.treeBefore = null;
+        this.treeAfter = null;
+    }
+
+    /** Insert, Delete, Update, Move, TreeInsert or TreeDelete. */
+    public String action() {
+        return action;
+    }
+
+    /** The changed GumTree node, or null if this action was read back rather than computed. */
+    public Tree node() {
+        return node;
+    }
+
+    public String nodeTree() {
+        if (nodeTree == null && node != null) nodeTree = Serializers.toLisp(node);
+        return nodeTree;
+    }
+
+    public String treeBefore() {
+        return roots != null ? roots.before() : treeBefore;
+    }
+
+    public String treeAfter() {
+        return roots != null ? roots.after() : treeAfter;
+    }
+
+    /** Serialize the trees now; they are kept for later calls. */
+    void serializeTrees() {
+        nodeTree();
+        treeBefore();
+        treeAfter();
+    }
+
+    /** Writes the fields in report order, nulls omitted. */
+    static final TypeAdapter<ActionEntry> ADAPTER = new TypeAdapter<ActionEntry>() {
+        @Override
+        public void write(JsonWriter out, ActionEntry a) throws IOException {
+            out.beginObject();
+            if (a.action() != null) out.name("action").value(a.action());
+            if (a.nodeTree() != null) out.name("nodeTree").value(a.nodeTree());
+            if (a.treeBefore() != null) out.name("treeBefore").value(a.treeBefore());
+            if (a.treeAfter() != null) out.name("treeAfter").value(a.treeAfter());
+            out.endObject();
+        }
+
+        @Override
+        public ActionEntry read(JsonReader in) throws IOException {
+            String action = null, nodeTree = null, treeBefore = null, treeAfter = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "action": action = in.nextString(); break;
+                    case "nodeTree": nodeTree = in.nextString(); break;
+                    case "treeBefore": treeBefore = in.nextString(); break;
+                    case "treeAfter": treeAfter = in.nextString(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ActionEntry(action, nodeTree, treeBefore, treeAfter);
+        }
+    };
+}
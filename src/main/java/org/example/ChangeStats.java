@@ -0,0 +1,238 @@
+package org.example;
+
+import com.github.gumtreediff.actions.EditScript;
+import com.github.gumtreediff.actions.model.Action;
+import com.github.gumtreediff.tree.FakeTree;
+import com.github.gumtreediff.tree.Tree;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Change counts for one edit script (or the sum of many): actions by kind, by node type and by
+ * enclosing declaration ("Outer.Inner#method"). Built in one pass over the script with mutable
+ * int counters, without serializing any tree.
+ */
+public class ChangeStats {
+
+    private static final String[] ACTION_KINDS = {"Insert", "Delete", "Update", "Move", "TreeInsert", "TreeDelete"};
+
+    private static final Set<String> TYPE_DECLARATIONS = new HashSet<>(Arrays.asList(
+            "TypeDeclaration", "EnumDeclaration", "RecordDeclaration", "AnnotationTypeDeclaration"));
+
+    private static final Set<String> MEMBER_DECLARATIONS = new HashSet<>(Arrays.asList(
+            "MethodDeclaration", "AnnotationTypeMemberDeclaration"));
+
+    private final int[] byAction = new int[ACTION_KINDS.length];
+    private final Map<String, int[]> otherActions = new HashMap<>();
+    private final Map<String, int[]> byNodeType = new HashMap<>();
+    private final Map<String, int[]> byEnclosing = new HashMap<>();
+    private int total;
+
+    /** Aggregate a single edit script. */
+    public static ChangeStats of(EditScript script) {
+        return of(script, null);
+    }
+
+    /**
+     * Aggregate an edit script computed on a detached declaration subtree. {@code owner} is the
+     * qualified name of the type the subtree belongs to; it stands in for the missing parents.
+     */
+    public static ChangeStats of(EditScript script, String owner) {
+        ChangeStats stats = new ChangeStats();
+        Map<Tree, String> enclosingMemo = new IdentityHashMap<>();
+        for (Action a : script) {
+            stats.total++;
+            String kind = a.getClass().getSimpleName();
+            int idx = actionIndex(kind);
+            if (idx >= 0) stats.byAction[idx]++;
+            else increment(stats.otherActions, kind, 1);
+
+            Tree n = a.getNode();
+            increment(stats.byNodeType, n.getType().toString(), 1);
+            increment(stats.byEnclosing, enclosingKey(n, owner, enclosingMemo), 1);
+        }
+        return stats;
+    }
+
+    /** Fold another set of counts into this one. */
+    public void add(ChangeStats other) {
+        total += other.total;
+        for (int i = 0; i < byAction.length; i++) byAction[i] += other.byAction[i];
+        other.otherActions.forEach((k, v) -> increment(otherActions, k, v[0]));
+        other.byNodeType.forEach((k, v) -> increment(byNodeType, k, v[0]));
+        other.byEnclosing.forEach((k, v) -> increment(byEnclosing, k, v[0]));
+    }
+
+    public int total() {
+        return total;
+    }
+
+    /** JSON-friendly view; map keys are sorted so reports are stable across runs. */
+    public Map<String, Object> toMap() {
+        Map<String, Object> actions = new LinkedHashMap<>();
+        for (int i = 0; i < ACTION_KINDS.length; i++) {
+            if (byAction[i] > 0) actions.put(ACTION_KINDS[i], byAction[i]);
+        }
+        new TreeMap<>(otherActions).forEach((k, v) -> actions.put(k, v[0]));
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("total", total);
+        m.put("actions", actions);
+        m.put("nodeTypes", sortedCounts(byNodeType));
+        m.put("enclosing", sortedCounts(byEnclosing));
+        return m;
+    }
+
+    /** Action kinds with a non-zero count, in report order. */
+    public Set<String> actionKinds() {
+        Set<String> kinds = new LinkedHashSet<>();
+        for (int i = 0; i < ACTION_KINDS.length; i++) {
+            if (byAction[i] > 0) kinds.add(ACTION_KINDS[i]);
+        }
+        kinds.addAll(new TreeSet<>(otherActions.keySet()));
+        return kinds;
+    }
+
+    /** Node types of the changed nodes, sorted. */
+    public Set<String> nodeTypes() {
+        return new TreeSet<>(byNodeType.keySet());
+    }
+
+    /**
+     * Streams the same JSON as {@link #toMap()} without building the maps; reading sums into fresh
+     * counters, e.g. to add up the partial reports of a sharded run.
+     */
+    static final TypeAdapter<ChangeStats> ADAPTER = new TypeAdapter<ChangeStats>() {
+        @Override
+        public void write(JsonWriter out, ChangeStats stats) throws IOException {
+            out.beginObject();
+            out.name("total").value(stats.total);
+            out.name("actions").beginObject();
+            for (int i = 0; i < ACTION_KINDS.length; i++) {
+                if (stats.byAction[i] > 0) out.name(ACTION_KINDS[i]).value(stats.byAction[i]);
+            }
+            writeSorted(out, stats.otherActions);
+            out.endObject();
+            out.name("nodeTypes").beginObject();
+            writeSorted(out, stats.byNodeType);
+            out.endObject();
+            out.name("enclosing").beginObject();
+            writeSorted(out, stats.byEnclosing);
+            out.endObject();
+            out.endObject();
+        }
+
+        @Override
+        public ChangeStats read(JsonReader in) throws IOException {
+            ChangeStats stats = new ChangeStats();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "total":
+                        stats.total = in.nextInt();
+                        break;
+                    case "actions":
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String kind = in.nextName();
+                            int idx = actionIndex(kind);
+                            if (idx >= 0) stats.byAction[idx] += in.nextInt();
+                            else increment(stats.otherActions, kind, in.nextInt());
+                        }
+                        in.endObject();
+                        break;
+                    case "nodeTypes":
+                        readCounts(in, stats.byNodeType);
+                        break;
+                    case "enclosing":
+                        readCounts(in, stats.byEnclosing);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return stats;
+        }
+    };
+
+    private static void writeSorted(JsonWriter out, Map<String, int[]> counts) throws IOException {
+        for (Map.Entry<String, int[]> e : new TreeMap<>(counts).entrySet()) out.name(e.getKey()).value(e.getValue()[0]);
+    }
+
+    private static void readCounts(JsonReader in, Map<String, int[]> counts) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            increment(counts, key, in.nextInt());
+        }
+        in.endObject();
+    }
+
+    private static Map<String, Integer> sortedCounts(Map<String, int[]> counts) {
+        Map<String, Integer> out = new TreeMap<>();
+        counts.forEach((k, v) -> out.put(k, v[0]));
+        return out;
+    }
+
+    private static int actionIndex(String kind) {
+        for (int i = 0; i < ACTION_KINDS.length; i++) {
+            if (ACTION_KINDS[i].equals(kind)) return i;
+        }
+        return -1;
+    }
+
+    private static void increment(Map<String, int[]> counts, String key, int by) {
+        counts.computeIfAbsent(key, k -> new int[1])[0] += by;
+    }
+
+    /**
+     * "Outer.Inner#method" for the nearest enclosing method (or the node itself if it is one),
+     * "Outer.Inner" when the node sits directly in a type, "&lt;file&gt;" outside any type.
+     */
+    private static String enclosingKey(Tree node, String owner, Map<Tree, String> memo) {
+        Tree t = node;
+        String member = null;
+        while (t != null) {
+            String type = t.getType().toString();
+            if (member == null && MEMBER_DECLARATIONS.contains(type)) {
+                member = declaredName(t);
+            } else if (TYPE_DECLARATIONS.contains(type)) {
+                String typeName = qualifiedTypeName(t, owner, memo);
+                return member == null ? typeName : typeName + "#" + member;
+            }
+            t = t.getParent();
+        }
+        if (owner == null) return "<file>";
+        return member == null ? owner : owner + "#" + member;
+    }
+
+    private static String qualifiedTypeName(Tree typeDecl, String owner, Map<Tree, String> memo) {
+        String cached = memo.get(typeDecl);
+        if (cached != null) return cached;
+        // the detached root of a declaration subtree is the owner type itself; the script generator
+        // hangs the destination root under a FakeTree, so that counts as detached too
+        boolean detachedRoot = typeDecl.getParent() == null || typeDecl.getParent() instanceof FakeTree;
+        String name = owner != null && detachedRoot ? owner : declaredName(typeDecl);
+        for (Tree p = typeDecl.getParent(); p != null; p = p.getParent()) {
+            if (TYPE_DECLARATIONS.contains(p.getType().toString())) {
+                name = qualifiedTypeName(p, owner, memo) + "." + name;
+                break;
+            }
+        }
+        memo.put(typeDecl, name);
+        return name;
+    }
+
+    /** Label of the first direct SimpleName child, which JDT trees use for the declared name. */
+    static String declaredName(Tree decl) {
+        for (Tree c : decl.getChildren()) {
+            if ("SimpleName".equals(c.getType().toString())) return c.getLabel();
+        }
+        return "?";
+    }
+}
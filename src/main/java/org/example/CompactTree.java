@@ -0,0 +1,186 @@
+package org.example;
+
+import com.github.gumtreediff.tree.DefaultTree;
+import com.github.gumtreediff.tree.Tree;
+import com.github.gumtreediff.tree.Type;
+
+import java.util.*;
+
+/**
+ * Immutable, struct-of-arrays copy of a GumTree {@link Tree}, for keeping many parsed versions in
+ * memory. Nodes are numbered in pre-order (the root is 0), so a subtree occupies the contiguous id
+ * range {@code [n, n + size(n))}. Every node costs a few ints: type id, parent, first child, next
+ * sibling, pos, length and an index into the tree's label pool. Each distinct label is stored once.
+ * Type ids are shared by all trees. Metadata is not kept.
+ */
+public final class CompactTree {
+
+    /** Missing parent, child or sibling; also the label index of nodes without a label. */
+    public static final int NONE = -1;
+
+    private static final Map<Type, Integer> TYPE_IDS = new HashMap<>();
+    /** Id -> type; replaced (never mutated) when a type is added, so reads need no lock. */
+    private static volatile Type[] types = new Type[0];
+
+    private final int[] type;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] size;
+    private final int[] pos;
+    private final int[] length;
+    private final int[] label;
+    private final String[] labels;
+
+    private CompactTree(int n, String[] labels) {
+        this.type = new int[n];
+        this.parent = new int[n];
+        this.firstChild = new int[n];
+        this.nextSibling = new int[n];
+        this.size = new int[n];
+        this.pos = new int[n];
+        this.length = new int[n];
+        this.label = new int[n];
+        this.labels = labels;
+    }
+
+    /** Copy of root and its descendants (iterative, so deep trees do not overflow the stack). */
+    public static CompactTree of(Tree root) {
+        List<Tree> order = new ArrayList<>();
+        Deque<Tree> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Tree t = stack.pop();
+            order.add(t);
+            List<Tree> children = t.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) stack.push(children.get(i));
+        }
+
+        Map<Tree, Integer> ids = new IdentityHashMap<>(order.size() * 2);
+        Map<String, Integer> labelIds = new HashMap<>();
+        List<String> pool = new ArrayList<>();
+        int[] labelOf = new int[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            ids.put(order.get(i), i);
+            String l = order.get(i).getLabel();
+            if (l == null || l.isEmpty()) {
+                labelOf[i] = NONE;
+            } else {
+                labelOf[i] = labelIds.computeIfAbsent(l, k -> {
+                    pool.add(k);
+                    return pool.size() - 1;
+                });
+            }
+        }
+
+        CompactTree c = new CompactTree(order.size(), pool.toArray(new String[0]));
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Tree t = order.get(i);
+            c.type[i] = typeId(t.getType());
+            c.parent[i] = i == 0 ? NONE : ids.get(t.getParent());
+            c.pos[i] = t.getPos();
+            c.length[i] = t.getLength();
+            c.label[i] = labelOf[i];
+            List<Tree> children = t.getChildren();
+            c.firstChild[i] = children.isEmpty() ? NONE : i + 1;
+            int s = 1;
+            for (int k = 0; k < children.size(); k++) {
+                int child = ids.get(children.get(k));
+                c.nextSibling[child] = k + 1 < children.size() ? ids.get(children.get(k + 1)) : NONE;
+                s += c.size[child]; // children have higher ids, so their sizes are already set
+            }
+            c.size[i] = s;
+        }
+        c.nextSibling[0] = NONE;
+        return c;
+    }
+
+    /** Rebuild an equivalent GumTree tree (types, labels, positions and shape; no metadata). */
+    public Tree toTree() {
+        Tree[] nodes = new Tree[type.length];
+        for (int i = 0; i < type.length; i++) {
+            Tree t = label[i] == NONE ? new DefaultTree(type(i)) : new DefaultTree(type(i), labels[label[i]]);
+            t.setPos(pos[i]);
+            t.setLength(length[i]);
+            nodes[i] = t;
+            if (parent[i] != NONE) nodes[parent[i]].addChild(t); // pre-order: children arrive in order
+        }
+        return nodes[0];
+    }
+
+    // ===== Node access =====
+
+    public int nodeCount() {
+        return type.length;
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    public int typeId(int node) {
+        return type[node];
+    }
+
+    public Type type(int node) {
+        return typeForId(type[node]);
+    }
+
+    /** Label of the node, or "" like {@link Tree#getLabel()} when it has none. */
+    public String label(int node) {
+        return label[node] == NONE ? "" : labels[label[node]];
+    }
+
+    public boolean hasLabel(int node) {
+        return label[node] != NONE;
+    }
+
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /** Number of nodes in the subtree rooted at node, itself included. */
+    public int size(int node) {
+        return size[node];
+    }
+
+    public int pos(int node) {
+        return pos[node];
+    }
+
+    public int length(int node) {
+        return length[node];
+    }
+
+    /** Distinct labels stored for this tree. */
+    public int labelPoolSize() {
+        return labels.length;
+    }
+
+    // ===== Shared type ids =====
+
+    /** Stable id of a GumTree type for the life of the JVM (types are interned by TypeSet). */
+    public static synchronized int typeId(Type t) {
+        Integer id = TYPE_IDS.get(t);
+        if (id == null) {
+            id = types.length;
+            Type[] grown = Arrays.copyOf(types, id + 1);
+            grown[id] = t;
+            types = grown;
+            TYPE_IDS.put(t, id);
+        }
+        return id;
+    }
+
+    public static Type typeForId(int id) {
+        return types[id];
+    }
+}
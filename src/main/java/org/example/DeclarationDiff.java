@@ -0,0 +1,229 @@
+package org.example;
+
+import com.github.gumtreediff.actions.EditScript;
+import com.github.gumtreediff.matchers.MappingStore;
+import com.github.gumtreediff.tree.DefaultTree;
+import com.github.gumtreediff.tree.Tree;
+
+import java.util.*;
+
+/**
+ * Declaration-level diff for JDT trees. Each compilation unit is split into a header (package and
+ * imports), type shells (a type without its members), methods, fields, initializers and enum
+ * constants. Declarations are paired by signature and compared by subtree hash; GumTree only runs on
+ * the pairs whose hash differs, so the cost follows the edited declarations, not the file size.
+ */
+public class DeclarationDiff {
+
+    private static final Set<String> TYPE_DECLARATIONS = new HashSet<>(Arrays.asList(
+            "TypeDeclaration", "EnumDeclaration", "RecordDeclaration", "AnnotationTypeDeclaration"));
+
+    private static final Set<String> MODIFIERS = new HashSet<>(Arrays.asList(
+            "Modifier", "MarkerAnnotation", "SingleMemberAnnotation", "NormalAnnotation"));
+
+    /** One declaration of a file: owner is the qualified name of the enclosing type (null for the header). */
+    static final class Declaration {
+        final String kind;
+        final String signature;
+        final String owner;
+        final Tree tree;
+
+        Declaration(String kind, String signature, String owner, Tree tree) {
+            this.kind = kind;
+            this.signature = signature;
+            this.owner = owner;
+            this.tree = tree;
+        }
+    }
+
+    /** A declaration that differs between the two versions; diff is null for added/removed ones. */
+    static final class Change {
+        final Declaration before;
+        final Declaration after;
+        final String status;
+        final Map<EditScript, MappingStore> diff;
+
+        Change(Declaration before, Declaration after, String status, Map<EditScript, MappingStore> diff) {
+            this.before = before;
+            this.after = after;
+            this.status = status;
+            this.diff = diff;
+        }
+
+        Declaration any() {
+            return after != null ? after : before;
+        }
+    }
+
+    /** Result for one file pair: the changed declarations in source order, plus how many were identical. */
+    static final class Result {
+        final List<Change> changes = new ArrayList<>();
+        int unchanged;
+    }
+
+    /** Only JDT compilation units can be split; anything else goes through the whole-file diff. */
+    public static boolean supports(Tree root) {
+        return "CompilationUnit".equals(root.getType().toString());
+    }
+
+    static Result diff(Tree src, Tree dst) {
+        Map<String, Declaration> before = split(src);
+        Map<String, Declaration> after = split(dst);
+
+        Result result = new Result();
+        for (Declaration b : before.values()) {
+            Declaration a = after.get(b.signature);
+            if (a == null) {
+                result.changes.add(new Change(b, null, "removed", null));
+            } else if (b.tree.isIsomorphicTo(a.tree)) {
+                result.unchanged++;
+            } else {
+                // match detached copies: the script generator re-parents the destination root
+                Map<EditScript, MappingStore> d = GumTreeExtractor.matchTrees(b.tree.deepCopy(), a.tree.deepCopy());
+                result.changes.add(new Change(b, a, "modified", d));
+            }
+        }
+        for (Declaration a : after.values()) {
+            if (!before.containsKey(a.signature)) {
+                result.changes.add(new Change(null, a, "added", null));
+            }
+        }
+        return result;
+    }
+
+    /** Declarations of a compilation unit keyed by signature, in source order. */
+    static Map<String, Declaration> split(Tree cu) {
+        Map<String, Declaration> out = new LinkedHashMap<>();
+        add(out, new Declaration("header", "<header>", null, shell(cu)));
+        for (Tree c : cu.getChildren()) {
+            if (TYPE_DECLARATIONS.contains(typeOf(c))) {
+                splitType(c, null, out);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * What of a compilation unit can move to another file on its own: each top-level type whole, then
+     * the member declarations of {@link #split}. For files added or deleted outright, which have no
+     * edit script to take moved code from.
+     */
+    static List<Declaration> movable(Tree cu) {
+        List<Declaration> out = new ArrayList<>();
+        for (Tree c : cu.getChildren()) {
+            if (TYPE_DECLARATIONS.contains(typeOf(c))) {
+                String name = ChangeStats.declaredName(c);
+                out.add(new Declaration("type", name, name, c));
+            }
+        }
+        for (Declaration d : split(cu).values()) {
+            if (!"header".equals(d.kind) && !"type".equals(d.kind)) out.add(d);
+        }
+        return out;
+    }
+
+    private static void splitType(Tree type, String outer, Map<String, Declaration> out) {
+        String name = ChangeStats.declaredName(type);
+        String qualified = outer == null ? name : outer + "." + name;
+        add(out, new Declaration("type", qualified, qualified, shell(type)));
+
+        int initializers = 0;
+        for (Tree c : type.getChildren()) {
+            String t = typeOf(c);
+            if (TYPE_DECLARATIONS.contains(t)) {
+                splitType(c, qualified, out);
+            } else if ("MethodDeclaration".equals(t)) {
+                add(out, new Declaration("method", qualified + "#" + methodSignature(c), qualified, c));
+            } else if ("AnnotationTypeMemberDeclaration".equals(t)) {
+                add(out, new Declaration("method", qualified + "#" + ChangeStats.declaredName(c) + "()", qualified, c));
+            } else if ("FieldDeclaration".equals(t)) {
+                add(out, new Declaration("field", qualified + "#" + fieldNames(c), qualified, c));
+            } else if ("EnumConstantDeclaration".equals(t)) {
+                add(out, new Declaration("enumConstant", qualified + "#" + ChangeStats.declaredName(c), qualified, c));
+            } else if ("Initializer".equals(t)) {
+                add(out, new Declaration("initializer", qualified + "#<init" + (initializers++) + ">", qualified, c));
+            }
+        }
+    }
+
+    private static boolean isMember(Tree t) {
+        String type = typeOf(t);
+        return TYPE_DECLARATIONS.contains(type)
+                || "MethodDeclaration".equals(type) || "AnnotationTypeMemberDeclaration".equals(type)
+                || "FieldDeclaration".equals(type) || "EnumConstantDeclaration".equals(type)
+                || "Initializer".equals(type);
+    }
+
+    /** Detached copy of a node with every member declaration removed (the part no other declaration owns). */
+    private static Tree shell(Tree t) {
+        Tree copy = new DefaultTree(t.getType(), t.getLabel());
+        copy.setPos(t.getPos());
+        copy.setLength(t.getLength());
+        for (Tree c : t.getChildren()) {
+            if (!isMember(c)) copy.addChild(c.deepCopy());
+        }
+        return copy;
+    }
+
+    /** Keep signatures unique (e.g. two initializers, or broken code with duplicate methods). */
+    private static void add(Map<String, Declaration> out, Declaration d) {
+        Declaration decl = d;
+        for (int i = 2; out.containsKey(decl.signature); i++) {
+            decl = new Declaration(d.kind, d.signature + "#" + i, d.owner, d.tree);
+        }
+        out.put(decl.signature, decl);
+    }
+
+    private static String methodSignature(Tree method) {
+        StringBuilder sb = new StringBuilder(ChangeStats.declaredName(method)).append('(');
+        boolean first = true;
+        for (Tree c : method.getChildren()) {
+            if (!"SingleVariableDeclaration".equals(typeOf(c))) continue;
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(parameterType(c));
+        }
+        return sb.append(')').toString();
+    }
+
+    private static String parameterType(Tree param) {
+        for (Tree p : param.getChildren()) {
+            String t = typeOf(p);
+            if (MODIFIERS.contains(t)) continue;
+            // JDT trees wrap a varargs parameter in a second SingleVariableDeclaration
+            if ("SingleVariableDeclaration".equals(t)) return parameterType(p);
+            if ("VARARGS_TYPE".equals(t)) return typeText(p) + "...";
+            return typeText(p);
+        }
+        return "?";
+    }
+
+    private static String fieldNames(Tree field) {
+        StringJoiner names = new StringJoiner(",");
+        for (Tree c : field.getChildren()) {
+            if ("VariableDeclarationFragment".equals(typeOf(c))) names.add(ChangeStats.declaredName(c));
+        }
+        return names.toString();
+    }
+
+    /** Compact source-like rendering of a type node, e.g. "List&lt;String&gt;" or "int[]". */
+    private static String typeText(Tree t) {
+        if (t.getLabel() != null && !t.getLabel().isEmpty()) return t.getLabel();
+        List<Tree> kids = t.getChildren();
+        if (kids.isEmpty()) return typeOf(t);
+        if (kids.size() == 1 && !"ArrayType".equals(typeOf(t))) return typeText(kids.get(0));
+
+        StringBuilder sb = new StringBuilder(typeText(kids.get(0)));
+        if ("ArrayType".equals(typeOf(t))) {
+            for (int i = 1; i < kids.size(); i++) sb.append("[]");
+            return sb.toString();
+        }
+        StringJoiner args = new StringJoiner(",", "<", ">");
+        for (int i = 1; i < kids.size(); i++) args.add(typeText(kids.get(i)));
+        return sb.append(args).toString();
+    }
+
+    private static String typeOf(Tree t) {
+        return t.getType().toString();
+    }
+}
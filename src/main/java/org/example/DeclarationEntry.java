@@ -0,0 +1,111 @@
+package org.example;
+
+import com.github.gumtreediff.tree.Tree;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One declaration section of a declaration-granularity entry: the declaration, how it changed, and
+ * its actions (or stats); added and removed declarations carry their whole tree instead, serialized
+ * on first access.
+ */
+public final class DeclarationEntry {
+
+    String kind;
+    String signature;
+    String status;
+    List<ActionEntry> actions;
+    ChangeStats stats;
+    String nodeTree;
+    Tree tree;
+
+    public String kind() {
+        return kind;
+    }
+
+    public String signature() {
+        return signature;
+    }
+
+    /** modified, added or removed. */
+    public String status() {
+        return status;
+    }
+
+    public List<ActionEntry> actions() {
+        return actions;
+    }
+
+    public ChangeStats stats() {
+        return stats;
+    }
+
+    /** The added or removed declaration's subtree, or null if this section was read back rather than computed. */
+    public Tree tree() {
+        return tree;
+    }
+
+    public String nodeTree() {
+        if (nodeTree == null && tree != null) nodeTree = Serializers.toLisp(tree);
+        return nodeTree;
+    }
+
+    static final TypeAdapter<DeclarationEntry> ADAPTER = new TypeAdapter<DeclarationEntry>() {
+        @Override
+        public void write(JsonWriter out, DeclarationEntry d) throws IOException {
+            out.beginObject();
+            if (d.kind != null) out.name("kind").value(d.kind);
+            if (d.signature != null) out.name("signature").value(d.signature);
+            if (d.status != null) out.name("status").value(d.status);
+            if (d.actions != null) {
+                out.name("actions").beginArray();
+                for (ActionEntry a : d.actions) ActionEntry.ADAPTER.write(out, a);
+                out.endArray();
+            }
+            if (d.stats != null) {
+                out.name("stats");
+                ChangeStats.ADAPTER.write(out, d.stats);
+            }
+            if (d.nodeTree() != null) out.name("nodeTree").value(d.nodeTree());
+            out.endObject();
+        }
+
+        @Override
+        public DeclarationEntry read(JsonReader in) throws IOException {
+            DeclarationEntry d = new DeclarationEntry();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "kind": d.kind = in.nextString(); break;
+                    case "signature": d.signature = in.nextString(); break;
+                    case "status": d.status = in.nextString(); break;
+                    case "actions": d.actions = readActions(in); break;
+                    case "stats": d.stats = ChangeStats.ADAPTER.read(in); break;
+                    case "nodeTree": d.nodeTree = in.nextString(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return d;
+        }
+    };
+
+    static List<ActionEntry> readActions(JsonReader in) throws IOException {
+        List<ActionEntry> actions = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) actions.add(ActionEntry.ADAPTER.read(in));
+        in.endArray();
+        return actions;
+    }
+}
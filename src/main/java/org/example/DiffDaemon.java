@@ -0,0 +1,239 @@
+package org.example;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import japicmp.model.JApiChangeStatus;
+import japicmp.model.JApiClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Long-running local diff server. Keeps one JVM (loaded JDT/GumTree/japicmp classes, JIT-compiled
+ * code, shared generators and matcher configuration) warm across jobs. Project and
+ * archive jobs share one in-memory {@link EditScriptCache}, so file pairs repeated across jobs are
+ * diffed once.
+ * <p>
+ * Endpoints (JSON body, JSON response):
+ * <pre>
+ *   POST /project   {"before": dir, "after": dir, "output": file, "language": "java"}
+ *   POST /archives  {"root": dir, "extractDir": dir, "outputDir": dir, "language": "java"}
+ *   POST /jars      {"before": jar, "beforeVersion": v, "after": jar, "afterVersion": v}
+ *   GET  /status
+ * </pre>
+ * Jobs run on a fixed worker pool behind a bounded queue; when the queue is full the job is
+ * rejected with 503 instead of piling up. An archive job whose extraction dir (with its run journal)
+ * is in use by another running job is rejected with 409. The server binds to the loopback interface only,
+ * since jobs name arbitrary local paths.
+ */
+public class DiffDaemon {
+
+    public static final int DEFAULT_PORT = 7878;
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService httpThreads;
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    private final EditScriptCache editScripts = new EditScriptCache(EditScriptCache.DEFAULT_MEMORY_BYTES, null);
+    /** Extraction dirs of the archive jobs running now; two jobs in one dir would share its journal. */
+    private final Set<Path> busyExtractDirs = ConcurrentHashMap.newKeySet();
+
+    private DiffDaemon(int port, int workerCount, int queueCapacity) throws IOException {
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+        this.httpThreads = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.setExecutor(httpThreads);
+
+        server.createContext("/project", ex -> handle(ex, this::runProjectDiff));
+        server.createContext("/archives", ex -> handle(ex, this::runArchiveDiff));
+        server.createContext("/jars", ex -> handle(ex, this::runJarDiff));
+        server.createContext("/status", this::status);
+    }
+
+    /** Start a daemon on localhost:port with the given worker count and queue bound. */
+    public static DiffDaemon start(int port, int workerCount, int queueCapacity) throws IOException {
+        DiffDaemon daemon = new DiffDaemon(port, workerCount, queueCapacity);
+        daemon.server.start();
+        System.out.println("Diff daemon listening on localhost:" + port
+                + " (" + workerCount + " workers, queue " + queueCapacity + ")");
+        return daemon;
+    }
+
+    public void stop() {
+        server.stop(0);
+        workers.shutdown();
+        httpThreads.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int workerCount = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int queueCapacity = args.length > 2 ? Integer.parseInt(args[2]) : 4 * workerCount;
+        DiffDaemon daemon = start(port, workerCount, queueCapacity);
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop));
+    }
+
+    // ===== Jobs =====
+
+    private interface Job {
+        Map<String, Object> run(JsonObject request) throws Exception;
+    }
+
+    /** The job conflicts with one already running; answered with 409. */
+    private static final class BusyException extends RuntimeException {
+        BusyException(String message) {
+            super(message);
+        }
+    }
+
+    private Map<String, Object> runProjectDiff(JsonObject req) throws IOException {
+        String output = required(req, "output");
+        GumTreeExtractor.saveProjectDiffToJson(required(req, "before"), required(req, "after"), output,
+                DiffOptions.forLanguage(optional(req, "language", "java")).editScriptCache(editScripts));
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("output", output);
+        return res;
+    }
+
+    private Map<String, Object> runArchiveDiff(JsonObject req) throws IOException {
+        String extractDir = required(req, "extractDir");
+        String outputDir = required(req, "outputDir");
+        Path key = Paths.get(extractDir).toAbsolutePath().normalize();
+        if (Files.exists(key)) key = key.toRealPath();
+        if (!busyExtractDirs.add(key)) {
+            throw new BusyException("Another job is using extractDir " + key);
+        }
+        try {
+            GumTreeExtractor.compareArchivesInRoot(required(req, "root"), extractDir, outputDir,
+                    DiffOptions.forLanguage(optional(req, "language", "java"))
+                            .outputCompression(optional(req, "compress", "none"))
+                            .editScriptCache(editScripts));
+        } finally {
+            busyExtractDirs.remove(key);
+        }
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("outputDir", outputDir);
+        return res;
+    }
+
+    private Map<String, Object> runJarDiff(JsonObject req) {
+        List<JApiClass> classes = JarComparator.compareJars(
+                new File(required(req, "before")), required(req, "beforeVersion"),
+                new File(required(req, "after")), required(req, "afterVersion"));
+        List<Map<String, Object>> changed = new ArrayList<>();
+        for (JApiClass c : classes) {
+            if (c.getChangeStatus() == JApiChangeStatus.UNCHANGED) continue;
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("class", c.getFullyQualifiedName());
+            m.put("changeStatus", c.getChangeStatus().name());
+            m.put("binaryCompatible", c.isBinaryCompatible());
+            m.put("sourceCompatible", c.isSourceCompatible());
+            changed.add(m);
+        }
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("classes", changed);
+        return res;
+    }
+
+    // ===== HTTP plumbing =====
+
+    private void handle(HttpExchange ex, Job job) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+                respond(ex, 405, error("Use POST"));
+                return;
+            }
+            JsonObject req;
+            try (InputStream in = ex.getRequestBody()) {
+                req = JsonParser.parseString(new String(in.readAllBytes(), StandardCharsets.UTF_8)).getAsJsonObject();
+            } catch (RuntimeException e) {
+                respond(ex, 400, error("Malformed JSON body: " + e.getMessage()));
+                return;
+            }
+
+            long tStart = System.nanoTime();
+            Future<Map<String, Object>> result;
+            try {
+                result = workers.submit(() -> job.run(req));
+            } catch (RejectedExecutionException e) {
+                respond(ex, 503, error("Job queue is full, retry later"));
+                return;
+            }
+
+            try {
+                Map<String, Object> res = result.get();
+                res.put("status", "ok");
+                res.put("timeMs", Helpers.msSince(tStart));
+                respond(ex, 200, res);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                int code = cause instanceof IllegalArgumentException ? 400
+                        : cause instanceof BusyException ? 409 : 500;
+                respond(ex, code, error(cause.getClass().getSimpleName() + ": " + cause.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.cancel(true);
+                respond(ex, 500, error("Interrupted"));
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void status(HttpExchange ex) throws IOException {
+        try {
+            Map<String, Object> res = new LinkedHashMap<>();
+            res.put("status", "ok");
+            res.put("activeJobs", workers.getActiveCount());
+            res.put("queuedJobs", workers.getQueue().size());
+            res.put("queueCapacity", workers.getQueue().size() + workers.getQueue().remainingCapacity());
+            res.put("completedJobs", workers.getCompletedTaskCount());
+            res.put("editScriptCache", editScripts.stats());
+            respond(ex, 200, res);
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void respond(HttpExchange ex, int code, Map<String, Object> body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("status", "error");
+        m.put("error", message);
+        return m;
+    }
+
+    private static String required(JsonObject req, String key) {
+        if (!req.has(key) || req.get(key).isJsonNull()) {
+            throw new IllegalArgumentException("Missing field: " + key);
+        }
+        return req.get(key).getAsString();
+    }
+
+    private static String optional(JsonObject req, String key, String def) {
+        return req.has(key) && !req.get(key).isJsonNull() ? req.get(key).getAsString() : def;
+    }
+}
@@ -0,0 +1,228 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Settings for a project diff or an archive-history run. For a project diff the defaults reproduce the
+ * plain {@link GumTreeExtractor#saveProjectDiffToJson(String, String, String, String)} behaviour. An
+ * archive-history run ({@link GumTreeExtractor#compareArchivesInRoot(String, String, DiffOptions)})
+ * differs from extracting everything and diffing it by default:
+ * <ul>
+ *   <li>{@link #extractFilter()} is {@link ExtractFilter#sources()}: only .java and .kt entries are
+ *       written, the rest of each archive is skipped.</li>
+ *   <li>{@link #resume()} is on: the run writes run-journal.jsonl (and a run-journal.jsonl.d dir of
+ *       pair checkpoints) into the extraction dir, and reuses the extractions, reports and file
+ *       entries an earlier run recorded there.</li>
+ * </ul>
+ */
+public class DiffOptions {
+
+    /** What each file entry carries: the full action list, or only aggregated change counts. */
+    public enum ReportMode { FULL, STATS_ONLY }
+
+    /** Unit that GumTree matches: the whole file, or each changed declaration on its own. */
+    public enum Granularity { FILE, DECLARATION }
+
+    private String language = "java";
+    private ReportMode reportMode = ReportMode.FULL;
+    private Granularity granularity = Granularity.FILE;
+    private Set<String> binaryUnchangedSources = Collections.emptySet();
+    private String outputCompression = "";
+    private boolean skipFormattingOnly;
+    private boolean resume = true;
+    private boolean detectMoves;
+    private int diffThreads;
+    private int pipelineWindow;
+    private ExtractFilter extractFilter = ExtractFilter.sources();
+    private List<String> scanExcludes = List.of();
+    private EditScriptCache editScriptCache;
+    private RunJournal.PairCheckpoint checkpoint;
+
+    public static DiffOptions forLanguage(String language) {
+        return new DiffOptions().language(language);
+    }
+
+    public String language() {
+        return language;
+    }
+
+    public DiffOptions language(String language) {
+        this.language = language;
+        return this;
+    }
+
+    public ReportMode reportMode() {
+        return reportMode;
+    }
+
+    /** STATS_ONLY replaces per-file "actions" with "stats" counts and skips all tree serialization. */
+    public DiffOptions reportMode(ReportMode reportMode) {
+        this.reportMode = reportMode;
+        return this;
+    }
+
+    public Granularity granularity() {
+        return granularity;
+    }
+
+    /**
+     * DECLARATION splits Java files into type/method/field declarations, pairs them by signature and
+     * only matches the ones whose subtree hash changed; entries then carry "declarations" sections
+     * instead of a file-wide "actions" list.
+     */
+    public DiffOptions granularity(Granularity granularity) {
+        this.granularity = granularity;
+        return this;
+    }
+
+    /**
+     * Use the release jars built from the two source trees as a prefilter: source files whose
+     * compiled classes are byte-identical are reported as unchanged without being parsed.
+     */
+    public DiffOptions releaseJars(File beforeJar, File afterJar) throws IOException {
+        this.binaryUnchangedSources = JarComparator.unchangedSourceFiles(beforeJar, afterJar);
+        return this;
+    }
+
+    /** Source keys ("pkg/path/File.java") known to be unchanged from the binary comparison. */
+    public Set<String> binaryUnchangedSources() {
+        return binaryUnchangedSources;
+    }
+
+    /** Set the already computed source keys, e.g. in a shard worker that did not see the jars. */
+    DiffOptions binaryUnchangedSources(Set<String> sources) {
+        this.binaryUnchangedSources = sources;
+        return this;
+    }
+
+    public boolean skipFormattingOnly() {
+        return skipFormattingOnly;
+    }
+
+    /**
+     * Compare a formatting-insensitive fingerprint before parsing (off by default, since it changes
+     * the report): pairs that only differ in whitespace or comments are reported as
+     * "unchanged_semantics" without an edit script, byte-identical pairs as "unchanged", and
+     * summary.fingerprintSkipped counts them.
+     */
+    public DiffOptions skipFormattingOnly(boolean skip) {
+        this.skipFormattingOnly = skip;
+        return this;
+    }
+
+    public boolean resume() {
+        return resume;
+    }
+
+    /**
+     * Archive-history runs keep a {@link RunJournal} in the extraction dir (on by default) and skip
+     * extractions, pairs and files an earlier, interrupted run already finished. Off starts from scratch.
+     */
+    public DiffOptions resume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    public boolean detectMoves() {
+        return detectMoves;
+    }
+
+    /**
+     * After the files, pair subtrees deleted in one file with identical or near-identical ones inserted
+     * in another and list them as "moves" (off by default); see {@link MoveDetector}. Needs full mode.
+     */
+    public DiffOptions detectMoves(boolean detectMoves) {
+        this.detectMoves = detectMoves;
+        return this;
+    }
+
+    public int diffThreads() {
+        return diffThreads > 0 ? diffThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Threads that parse and match file pairs (default: one per available core). Diffs asking for the
+     * same count share one pool; see {@link DiffPipeline}.
+     */
+    public DiffOptions diffThreads(int threads) {
+        this.diffThreads = threads;
+        return this;
+    }
+
+    public int pipelineWindow() {
+        return pipelineWindow > 0 ? pipelineWindow : Math.max(8, 4 * diffThreads());
+    }
+
+    /**
+     * Most file pairs between reading and writing at once, which bounds the file contents and trees
+     * held in memory (default: four per diff thread, at least 8).
+     */
+    public DiffOptions pipelineWindow(int pairs) {
+        this.pipelineWindow = pairs;
+        return this;
+    }
+
+    public List<String> scanExcludes() {
+        return scanExcludes;
+    }
+
+    /**
+     * Globs for files and directories left out when listing the project trees, on top of
+     * {@link Helpers#DEFAULT_SCAN_EXCLUDES}; see {@link Helpers#listCodeFiles(java.nio.file.Path, Set, List)}.
+     */
+    public DiffOptions scanExcludes(List<String> scanExcludes) {
+        this.scanExcludes = List.copyOf(scanExcludes);
+        return this;
+    }
+
+    public EditScriptCache editScriptCache() {
+        return editScriptCache;
+    }
+
+    /**
+     * Reuse diff results for file pairs whose contents were diffed before with the same settings; the
+     * summary then counts hits and misses under "editScriptCache". Null (the default) disables it.
+     */
+    public DiffOptions editScriptCache(EditScriptCache editScriptCache) {
+        this.editScriptCache = editScriptCache;
+        return this;
+    }
+
+    public ExtractFilter extractFilter() {
+        return extractFilter;
+    }
+
+    /** Archive entries written when archive-history runs extract; by default only the diffed sources. */
+    public DiffOptions extractFilter(ExtractFilter extractFilter) {
+        this.extractFilter = extractFilter;
+        return this;
+    }
+
+    /** File-level checkpoint of the pair currently being diffed, null outside journaled runs. */
+    RunJournal.PairCheckpoint checkpoint() {
+        return checkpoint;
+    }
+
+    DiffOptions checkpoint(RunJournal.PairCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /** Extension appended to generated report names, e.g. ".gz"; empty for plain JSON. */
+    public String outputCompression() {
+        return outputCompression;
+    }
+
+    /**
+     * Compress generated reports with the given codec ("gz", "bz2", "lz4", "sz", "deflate" or "none").
+     * Explicit output paths pick their codec from their own extension (see {@link ReportStreams}).
+     */
+    public DiffOptions outputCompression(String codec) {
+        this.outputCompression = ReportStreams.extensionFor(codec);
+        return this;
+    }
+}
@@ -0,0 +1,131 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the entries of a diff plan in stages and hands them to a sink in plan order:
+ * <ol>
+ *   <li>read: both files of a pair are read (and hashed, if the cache or a checkpoint needs the
+ *       SHA-1s) on a virtual thread, so blocked I/O costs no CPU thread;</li>
+ *   <li>diff: parsing, matching and serializing the action trees run on a pool of
+ *       {@link DiffOptions#diffThreads()} platform threads (one per core by default), shared by every
+ *       pipeline in the JVM that asks for that many (daemon jobs, archive pairs);</li>
+ *   <li>write: the calling thread takes the results in plan order and passes them to the sink.</li>
+ * </ol>
+ * At most {@link DiffOptions#pipelineWindow()} pairs are between reading and writing. The planner
+ * blocks on that bounded queue when the writer falls behind, so read-ahead stops instead of piling
+ * up file contents and trees; a slow pair at the head holds back only the pairs already in the window.
+ */
+final class DiffPipeline {
+
+    /** Receives the entries in plan order. */
+    interface Sink {
+        void accept(FileEntry entry) throws IOException;
+    }
+
+    /** Thread count -> pool of that many daemon threads, created on first use and kept for the JVM's life. */
+    private static final Map<Integer, ExecutorService> POOLS = new ConcurrentHashMap<>();
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /** One computed entry with the counts it adds to the run; merged by the writer, in order. */
+    private static final class Done {
+        final FileEntry entry;
+        final GumTreeExtractor.SkipCounts counts;
+        final ChangeStats stats;
+
+        Done(FileEntry entry, GumTreeExtractor.SkipCounts counts, ChangeStats stats) {
+            this.entry = entry;
+            this.counts = counts;
+            this.stats = stats;
+        }
+    }
+
+    private DiffPipeline() {
+    }
+
+    /**
+     * Compute every pair of the plan and pass the entries to the sink in plan order; their skip counts
+     * and (stats-only mode) change counts are added to {@code counts} and {@code projectStats}. A
+     * failing sink or pair stops the pipeline and is rethrown here.
+     */
+    static void run(List<GumTreeExtractor.FilePair> plan, DiffOptions options, ChangeStats projectStats,
+                    GumTreeExtractor.SkipCounts counts, Sink sink) throws IOException {
+        boolean hash = options.editScriptCache() != null || options.checkpoint() != null;
+        boolean stats = projectStats != null;
+        ExecutorService cpu = pool(options.diffThreads());
+        BlockingQueue<CompletableFuture<Done>> pending = new ArrayBlockingQueue<>(options.pipelineWindow());
+        ExecutorService reads = Executors.newVirtualThreadPerTaskExecutor();
+        Future<?> planner = reads.submit(() -> {
+            for (GumTreeExtractor.FilePair pair : plan) {
+                pending.put(CompletableFuture
+                        .supplyAsync(() -> hash ? GumTreeExtractor.Sources.read(pair, options).hash()
+                                : GumTreeExtractor.Sources.read(pair, options), reads)
+                        .thenApplyAsync(sources -> diff(pair, sources, options, stats), cpu));
+            }
+            return null;
+        });
+
+        boolean completed = false;
+        try {
+            for (int i = 0; i < plan.size(); i++) {
+                Done done = await(pending.take());
+                counts.add(done.counts);
+                if (stats) projectStats.add(done.stats);
+                sink.accept(done.entry);
+            }
+            await(planner);
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while diffing");
+        } finally {
+            if (!completed) {
+                planner.cancel(true);
+                for (CompletableFuture<Done> f : pending) f.cancel(true);
+                reads.shutdownNow();
+            }
+            reads.close();
+        }
+    }
+
+    private static ExecutorService pool(int threads) {
+        return POOLS.computeIfAbsent(threads, n -> Executors.newFixedThreadPool(n, r -> {
+            Thread t = new Thread(r, "diff-" + THREAD_COUNT.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    private static Done diff(GumTreeExtractor.FilePair pair, GumTreeExtractor.Sources sources, DiffOptions options,
+                             boolean stats) {
+        GumTreeExtractor.SkipCounts counts = new GumTreeExtractor.SkipCounts();
+        ChangeStats pairStats = stats ? new ChangeStats() : null;
+        try {
+            FileEntry entry = GumTreeExtractor.entryFor(pair, sources, options, pairStats, counts);
+            entry.serializeTrees(); // here rather than on the writer thread
+            return new Done(entry, counts, pairStats);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.example;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Memoized diff results for (old content, new content, diff configuration). The same blob pair comes
+ * back across cherry-picks, backports and overlapping version ranges. A hit replays the serialized
+ * diff fields of the earlier {@link FileEntry} instead of parsing and matching again.
+ * <p>
+ * Two tiers: an in-memory LRU bounded by (approximate) bytes, and optionally a directory of gzipped
+ * entries that outlives the JVM and is shared by concurrent runs (entries are written to a temp file
+ * and moved into place). A disk hit is promoted to memory. Safe for concurrent use.
+ */
+public class EditScriptCache {
+
+    public static final long DEFAULT_MEMORY_BYTES = 64L * 1024 * 1024;
+
+    /** Bumped whenever the cached fields would serialize differently, so older disk entries miss. */
+    private static final String FORMAT = "1";
+    private static final Gson COMPACT = ReportWriter.gsonBuilder().create();
+
+    private final long maxMemoryBytes;
+    private final Path diskDir;
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /** @param diskDir directory of the persistent tier, or null for memory only */
+    public EditScriptCache(long maxMemoryBytes, Path diskDir) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.diskDir = diskDir == null ? null : diskDir.toAbsolutePath().normalize();
+    }
+
+    public long maxMemoryBytes() {
+        return maxMemoryBytes;
+    }
+
+    public Path diskDir() {
+        return diskDir;
+    }
+
+    /** A cached result and the tier that answered. */
+    static final class Hit {
+        final boolean changed;
+        final FileEntry diff;
+        final boolean fromDisk;
+
+        Hit(boolean changed, FileEntry diff, boolean fromDisk) {
+            this.changed = changed;
+            this.diff = diff;
+            this.fromDisk = fromDisk;
+        }
+    }
+
+    /**
+     * Cache key: both content hashes, both file extensions (each side is parsed by its own extension)
+     * and a description of everything else that shapes the result.
+     */
+    static String key(String oldSha1, String newSha1, String oldExt, String newExt, String config) {
+        String material = FORMAT + "|" + oldSha1 + "|" + newSha1 + "|" + oldExt + "|" + newExt + "|" + config;
+        return Helpers.sha1(material.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Hit get(String key) throws IOException {
+        String json;
+        synchronized (this) {
+            json = memory.get(key);
+        }
+        if (json != null) {
+            memoryHits.incrementAndGet();
+            return decode(json, false);
+        }
+        if (diskDir != null) {
+            json = readDisk(key);
+            if (json != null) {
+                diskHits.incrementAndGet();
+                remember(key, json);
+                return decode(json, true);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Store the diff fields of a report entry, and whether the diff found a change. */
+    void put(String key, boolean changed, FileEntry diff) throws IOException {
+        String json = "{\"changed\":" + changed + ",\"fields\":" + COMPACT.toJson(diff, FileEntry.class) + "}";
+        remember(key, json);
+        if (diskDir != null) writeDisk(key, json);
+    }
+
+    /** Lifetime counters (all runs that used this instance). */
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("memoryHits", memoryHits.get());
+        m.put("diskHits", diskHits.get());
+        m.put("misses", misses.get());
+        synchronized (this) {
+            m.put("memoryEntries", memory.size());
+            m.put("memoryBytes", memoryBytes);
+        }
+        return m;
+    }
+
+    // ===== Memory tier =====
+
+    private synchronized void remember(String key, String json) {
+        long size = 2L * (key.length() + json.length());
+        if (size > maxMemoryBytes) return;
+        String old = memory.put(key, json);
+        if (old != null) memoryBytes -= 2L * (key.length() + old.length());
+        memoryBytes += size;
+        Iterator<Map.Entry<String, String>> it = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+            Map.Entry<String, String> eldest = it.next();
+            memoryBytes -= 2L * (eldest.getKey().length() + eldest.getValue().length());
+            it.remove();
+        }
+    }
+
+    private static Hit decode(String json, boolean fromDisk) throws IOException {
+        boolean changed = false;
+        FileEntry diff = null;
+        try (JsonReader in = new JsonReader(new StringReader(json))) {
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("changed".equals(name)) changed = in.nextBoolean();
+                else if ("fields".equals(name)) diff = FileEntry.ADAPTER.read(in);
+                else in.skipValue();
+            }
+            in.endObject();
+        }
+        return new Hit(changed, diff, fromDisk);
+    }
+
+    // ===== Disk tier =====
+
+    private Path diskFile(String key) {
+        return diskDir.resolve(key.substring(0, 2)).resolve(key + ".json.gz");
+    }
+
+    private String readDisk(String key) {
+        Path file = diskFile(key);
+        if (!Files.isRegularFile(file)) return null;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            JsonParser.parseString(json); // a torn or foreign file is a miss
+            return json;
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // another run may hold it; it is simply recomputed
+            }
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, String json) throws IOException {
+        Path file = diskFile(key);
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.example;
+
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Decides which archive entries get written during extraction. An entry is kept when its name ends with
+ * one of the extensions (if any are set) or its file name is one of the kept names, matches at least one
+ * include glob (if any are set) and matches no exclude glob. Globs use {@link java.nio.file.FileSystem#getPathMatcher} "glob:" syntax against the
+ * entry name, e.g. {@code **}{@code /src/test/**}.
+ */
+public final class ExtractFilter {
+
+    private final Set<String> extensions;
+    /** File names written whatever their extension. */
+    private final Set<String> names;
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final List<PathMatcher> includeMatchers = new ArrayList<>();
+    private final List<PathMatcher> excludeMatchers = new ArrayList<>();
+
+    private ExtractFilter(Set<String> extensions, Set<String> names, List<String> includes, List<String> excludes) {
+        this.extensions = new TreeSet<>(extensions);
+        this.names = new TreeSet<>(names);
+        this.includes = List.copyOf(includes);
+        this.excludes = List.copyOf(excludes);
+        for (String g : this.includes) includeMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + g));
+        for (String g : this.excludes) excludeMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + g));
+    }
+
+    /** Every entry, directories included (the behaviour before filtering existed). */
+    public static ExtractFilter all() {
+        return new ExtractFilter(Set.of(), Set.of(), List.of(), List.of());
+    }
+
+    /**
+     * Only the files the diff reads, plus the build files (pom.xml, build.gradle, ...) that make the
+     * scan skip a build/ or target/ dir beside them, so an extracted tree is scanned like a checkout.
+     */
+    public static ExtractFilter sources() {
+        return new ExtractFilter(GumTreeExtractor.CODE_EXTENSIONS, new HashSet<>(Helpers.BUILD_FILES),
+                List.of(), List.of());
+    }
+
+    public ExtractFilter extensions(Set<String> extensions) {
+        return new ExtractFilter(extensions, names, includes, excludes);
+    }
+
+    public ExtractFilter include(List<String> globs) {
+        List<String> all = new ArrayList<>(includes);
+        all.addAll(globs);
+        return new ExtractFilter(extensions, names, all, excludes);
+    }
+
+    public ExtractFilter exclude(List<String> globs) {
+        List<String> all = new ArrayList<>(excludes);
+        all.addAll(globs);
+        return new ExtractFilter(extensions, names, includes, all);
+    }
+
+    public boolean acceptsEverything() {
+        return extensions.isEmpty() && includes.isEmpty() && excludes.isEmpty();
+    }
+
+    /** True if the file entry with this archive name should be written. */
+    public boolean accepts(String entryName) {
+        if (!extensions.isEmpty() && !names.contains(entryName.substring(entryName.lastIndexOf('/') + 1))) {
+            int dot = entryName.lastIndexOf('.');
+            if (dot < 0 || !extensions.contains(entryName.substring(dot).toLowerCase(Locale.ROOT))) return false;
+        }
+        if (includeMatchers.isEmpty() && excludeMatchers.isEmpty()) return true;
+        java.nio.file.Path p = Paths.get(entryName);
+        if (!includeMatchers.isEmpty() && includeMatchers.stream().noneMatch(m -> m.matches(p))) return false;
+        return excludeMatchers.stream().noneMatch(m -> m.matches(p));
+    }
+
+    /** Canonical description; two filters with the same string select the same entries. */
+    @Override
+    public String toString() {
+        return "ext=" + extensions + (names.isEmpty() ? "" : " names=" + names)
+                + " include=" + includes + " exclude=" + excludes;
+    }
+}
@@ -0,0 +1,49 @@
+package org.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** What one archive extraction wrote and what its {@link ExtractFilter} skipped (uncompressed bytes). */
+public final class ExtractStats {
+
+    int filesWritten;
+    long bytesWritten;
+    int entriesSkipped;
+    long bytesSkipped;
+
+    public int filesWritten() {
+        return filesWritten;
+    }
+
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    public int entriesSkipped() {
+        return entriesSkipped;
+    }
+
+    public long bytesSkipped() {
+        return bytesSkipped;
+    }
+
+    void skipped(long size) {
+        entriesSkipped++;
+        if (size > 0) bytesSkipped += size;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("filesWritten", filesWritten);
+        m.put("bytesWritten", bytesWritten);
+        m.put("entriesSkipped", entriesSkipped);
+        m.put("bytesSkipped", bytesSkipped);
+        return m;
+    }
+
+    @Override
+    public String toString() {
+        return "wrote " + filesWritten + " files (" + bytesWritten + " bytes), skipped " + entriesSkipped
+                + " entries (" + bytesSkipped + " bytes)";
+    }
+}
@@ -0,0 +1,181 @@
+package org.example;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One element of a project report's "files" array. Which fields are set depends on the status and
+ * the report mode: same-path entries have a path, renamed ones an oldPath and newPath; the diff itself
+ * is an action list, stats counts, or declaration sections. {@link #ADAPTER} writes the fields in the
+ * fixed report order and leaves out unset ones.
+ */
+public final class FileEntry {
+
+    String path;
+    String status;
+    String oldPath;
+    String newPath;
+    String error;
+    List<ActionEntry> actions;
+    ChangeStats stats;
+    List<DeclarationEntry> declarations;
+    Integer unchangedDeclarations;
+    Long diffTimeMs;
+
+    public String path() {
+        return path;
+    }
+
+    /** unchanged, unchanged_semantics, modified, renamed_file, added_file, deleted_file or error. */
+    public String status() {
+        return status;
+    }
+
+    public String oldPath() {
+        return oldPath;
+    }
+
+    public String newPath() {
+        return newPath;
+    }
+
+    public String error() {
+        return error;
+    }
+
+    public List<ActionEntry> actions() {
+        return actions;
+    }
+
+    public ChangeStats stats() {
+        return stats;
+    }
+
+    public List<DeclarationEntry> declarations() {
+        return declarations;
+    }
+
+    public Integer unchangedDeclarations() {
+        return unchangedDeclarations;
+    }
+
+    public Long diffTimeMs() {
+        return diffTimeMs;
+    }
+
+    /** The path in the new version (the only path for same-path, added and deleted entries). */
+    public String currentPath() {
+        return path != null ? path : newPath;
+    }
+
+    /** This entry as compact JSON, with the same fields and order as in a report. */
+    public String toJson() {
+        return ADAPTER.toJson(this);
+    }
+
+    /** Take over the diff fields (actions, stats, declarations) of another entry. */
+    void copyDiffFrom(FileEntry other) {
+        actions = other.actions;
+        stats = other.stats;
+        declarations = other.declarations;
+        unchangedDeclarations = other.unchangedDeclarations;
+    }
+
+    /** Drop any partial diff and record the failure; error entries carry an empty action list. */
+    void fail(Exception ex) {
+        error = ex.getClass().getSimpleName() + ": " + ex.getMessage();
+        actions = List.of();
+        stats = null;
+        declarations = null;
+        unchangedDeclarations = null;
+    }
+
+    /** Serialize the action and declaration trees of a fresh diff ahead of writing; a no-op for read-back entries. */
+    void serializeTrees() {
+        if (actions != null) actions.forEach(ActionEntry::serializeTrees);
+        if (declarations != null) {
+            for (DeclarationEntry d : declarations) {
+                if (d.actions != null) d.actions.forEach(ActionEntry::serializeTrees);
+                d.nodeTree();
+            }
+        }
+    }
+
+    /** Fold this entry's counts into the project totals: file-level stats or per-declaration stats. */
+    void addStatsTo(ChangeStats projectStats) {
+        if (stats != null) projectStats.add(stats);
+        if (declarations != null) {
+            for (DeclarationEntry d : declarations) {
+                if (d.stats != null) projectStats.add(d.stats);
+            }
+        }
+    }
+
+    static final TypeAdapter<FileEntry> ADAPTER = new TypeAdapter<FileEntry>() {
+        @Override
+        public void write(JsonWriter out, FileEntry e) throws IOException {
+            out.beginObject();
+            if (e.path != null) out.name("path").value(e.path);
+            if (e.status != null) out.name("status").value(e.status);
+            if (e.oldPath != null) out.name("oldPath").value(e.oldPath);
+            if (e.newPath != null) out.name("newPath").value(e.newPath);
+            if (e.error != null) out.name("error").value(e.error);
+            if (e.actions != null) {
+                out.name("actions").beginArray();
+                for (ActionEntry a : e.actions) ActionEntry.ADAPTER.write(out, a);
+                out.endArray();
+            }
+            if (e.stats != null) {
+                out.name("stats");
+                ChangeStats.ADAPTER.write(out, e.stats);
+            }
+            if (e.declarations != null) {
+                out.name("declarations").beginArray();
+                for (DeclarationEntry d : e.declarations) DeclarationEntry.ADAPTER.write(out, d);
+                out.endArray();
+            }
+            if (e.unchangedDeclarations != null) out.name("unchangedDeclarations").value(e.unchangedDeclarations);
+            if (e.diffTimeMs != null) out.name("diffTimeMs").value(e.diffTimeMs);
+            out.endObject();
+        }
+
+        @Override
+        public FileEntry read(JsonReader in) throws IOException {
+            FileEntry e = new FileEntry();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "path": e.path = in.nextString(); break;
+                    case "status": e.status = in.nextString(); break;
+                    case "oldPath": e.oldPath = in.nextString(); break;
+                    case "newPath": e.newPath = in.nextString(); break;
+                    case "error": e.error = in.nextString(); break;
+                    case "actions": e.actions = DeclarationEntry.readActions(in); break;
+                    case "stats": e.stats = ChangeStats.ADAPTER.read(in); break;
+                    case "declarations":
+                        e.declarations = new ArrayList<>();
+                        in.beginArray();
+                        while (in.hasNext()) e.declarations.add(DeclarationEntry.ADAPTER.read(in));
+                        in.endArray();
+                        break;
+                    case "unchangedDeclarations": e.unchangedDeclarations = in.nextInt(); break;
+                    case "diffTimeMs": e.diffTimeMs = in.nextLong(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return e;
+        }
+    };
+}
@@ -0,0 +1,71 @@
+package org.example;
+
+import com.github.gumtreediff.gen.TreeGenerator;
+import com.github.gumtreediff.gen.TreeGenerators;
+import com.github.gumtreediff.gen.jdt.JdtTreeGenerator;
+import com.github.gumtreediff.tree.Tree;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the tree generator for each file from its extension, so mixed Java/Kotlin trees parse every
+ * file with the right frontend. Generators are resolved once per extension and reused; extensions
+ * without a registered generator fail immediately instead of going through a doomed parse.
+ */
+public class GeneratorDispatcher {
+
+    /** The JDT generator keeps no per-parse state, so one instance serves every file and thread. */
+    private static final JdtTreeGenerator JDT_GENERATOR = new JdtTreeGenerator();
+
+    /** ".ext" -> resolved generator, or empty if the registry has none for that extension. */
+    private static final Map<String, Optional<TreeGenerator>> BY_EXTENSION = new ConcurrentHashMap<>();
+
+    /**
+     * Parse a file. The language detected from the extension wins; {@code language} is only a hint
+     * for files whose extension {@link Helpers#detectLanguage(Path)} does not know.
+     */
+    public static Tree parse(Path file, String language) throws IOException {
+        return generatorFor(file, language).generateFrom().file(file.toString()).getRoot();
+    }
+
+    /** Same as {@link #parse(Path, String)} for content that has already been read. */
+    public static Tree parse(Path file, String content, String language) throws IOException {
+        return generatorFor(file, language).generateFrom().string(content).getRoot();
+    }
+
+    public static TreeGenerator generatorFor(Path file, String language) {
+        String lang = Helpers.detectLanguage(file);
+        if ("unknown".equals(lang) && language != null && !"auto".equalsIgnoreCase(language)) {
+            lang = language;
+        }
+        if ("java".equalsIgnoreCase(lang)) {
+            return JDT_GENERATOR;
+        }
+
+        String ext = extensionOf(file);
+        return BY_EXTENSION
+                .computeIfAbsent(ext, e -> resolveFromRegistry(file))
+                .orElseThrow(() -> new UnsupportedOperationException(
+                        "No tree generator registered for '" + ext + "' files (" + file.getFileName() + ")"));
+    }
+
+    private static Optional<TreeGenerator> resolveFromRegistry(Path file) {
+        TreeGenerators registry = TreeGenerators.getInstance();
+        String name = file.getFileName().toString();
+        if (!registry.hasGeneratorForFile(name)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(registry.get(name));
+    }
+
+    private static String extensionOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot);
+    }
+}
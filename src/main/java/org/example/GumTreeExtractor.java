@@ -4,18 +4,16 @@ package org.example;
 import com.github.gumtreediff.actions.EditScript;
 import com.github.gumtreediff.actions.EditScriptGenerator;
 import com.github.gumtreediff.actions.SimplifiedChawatheScriptGenerator;
-import com.github.gumtreediff.gen.TreeGenerators;
-import com.github.gumtreediff.gen.jdt.JdtTreeGenerator;
 
 import com.github.gumtreediff.matchers.*;
 import com.github.gumtreediff.tree.Tree;
 import com.github.gumtreediff.tree.TreeContext;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
 
 
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
@@ -24,14 +22,14 @@ import java.util.stream.Stream;
 
 
 import static org.example.Helpers.*;
-import static org.example.Serializers.toLisp;
 
 /**
  * GumTree utilities for file and project diffs.
  */
 public class GumTreeExtractor {
 
-
+    /** Matchers keep per-match state in fields: one resolved instance per thread, reused across files and jobs. */
+    private static final ThreadLocal<Matcher> MATCHER = ThreadLocal.withInitial(() -> Matchers.getInstance().getMatcher());
 
     /**
      * Compare two Java project directories and write a JSON report.
@@ -44,77 +42,322 @@ public class GumTreeExtractor {
     public static void saveProjectDiffToJson(String oldProjectDir,
                                              String newProjectDir,
                                              String outputJson, String  language) throws IOException {
+        saveProjectDiffToJson(oldProjectDir, newProjectDir, outputJson, DiffOptions.forLanguage(language));
+    }
+
+    /**
+     * Same as {@link #saveProjectDiffToJson(String, String, String, String)}, driven by {@link DiffOptions}.
+     */
+    public static void saveProjectDiffToJson(String oldProjectDir,
+                                             String newProjectDir,
+                                             String outputJson, DiffOptions options) throws IOException {
+        ProjectDiff.of(Paths.get(oldProjectDir), Paths.get(newProjectDir), options)
+                .writeTo(Paths.get(outputJson).toAbsolutePath());
+    }
+
+    /** Files considered by project diffs. */
+    static final Set<String> CODE_EXTENSIONS = new HashSet<>(Arrays.asList(".java", ".kt"));
+
+    /**
+     * Per-report counters for the summary: pairs answered without parsing, and edit-script cache
+     * lookups. Sharded runs add up the workers' counts.
+     */
+    static final class SkipCounts {
+        int binary;
+        int fingerprint;
+        int cacheMemoryHits;
+        int cacheDiskHits;
+        int cacheMisses;
+
+        void add(SkipCounts other) {
+            binary += other.binary;
+            fingerprint += other.fingerprint;
+            cacheMemoryHits += other.cacheMemoryHits;
+            cacheDiskHits += other.cacheDiskHits;
+            cacheMisses += other.cacheMisses;
+        }
+    }
+
+    /**
+     * One entry of a project diff before it is computed: the compared files (one side is absent for
+     * added and deleted files) and how they were paired.
+     */
+    static final class FilePair {
+        enum Kind { SAME_PATH, IDENTICAL_RENAME, RENAME, DELETED, ADDED }
+
+        final Kind kind;
+        final Path oldFile;
+        final Path newFile;
+        final String oldRel;
+        final String newRel;
+
+        FilePair(Kind kind, Path oldFile, Path newFile, String oldRel, String newRel) {
+            this.kind = kind;
+            this.oldFile = oldFile;
+            this.newFile = newFile;
+            this.oldRel = oldRel;
+            this.newRel = newRel;
+        }
+
+        /**
+         * Whether computing the entry reads the files: renames found by identical content do not, and
+         * added or deleted files only when their declarations are move candidates.
+         */
+        boolean needsContents(DiffOptions options) {
+            if (kind == Kind.ADDED || kind == Kind.DELETED) return movesFromWholeFiles(options);
+            return kind == Kind.SAME_PATH || kind == Kind.RENAME;
+        }
+    }
+
+    /**
+     * Both files of a pair, read once up front so the diff itself does no I/O. A read failure is kept
+     * and rethrown by the accessors, where the diff turns it into an error entry as before.
+     */
+    static final class Sources {
+        final Path oldFile;
+        final Path newFile;
+        private final byte[] oldBytes;
+        private final byte[] newBytes;
+        private final IOException failure;
+        private String oldSha1;
+        private String newSha1;
+
+        private Sources(Path oldFile, Path newFile, byte[] oldBytes, byte[] newBytes, IOException failure) {
+            this.oldFile = oldFile;
+            this.newFile = newFile;
+            this.oldBytes = oldBytes;
+            this.newBytes = newBytes;
+            this.failure = failure;
+        }
+
+        /** Read the files of the pair (nothing for pairs that need no contents). */
+        static Sources read(FilePair pair, DiffOptions options) {
+            if (!pair.needsContents(options)) return new Sources(pair.oldFile, pair.newFile, null, null, null);
+            try {
+                return new Sources(pair.oldFile, pair.newFile,
+                        pair.oldFile == null ? null : Files.readAllBytes(pair.oldFile),
+                        pair.newFile == null ? null : Files.readAllBytes(pair.newFile), null);
+            } catch (IOException e) {
+                return new Sources(pair.oldFile, pair.newFile, null, null, e);
+            }
+        }
+
+        /** Compute both SHA-1s now (for the cache key and checkpoints) rather than on first use. */
+        Sources hash() {
+            if (failure == null && oldBytes != null) oldSha1 = Helpers.sha1(oldBytes);
+            if (failure == null && newBytes != null) newSha1 = Helpers.sha1(newBytes);
+            return this;
+        }
+
+        byte[] oldBytes() throws IOException {
+            if (failure != null) throw failure;
+            return oldBytes;
+        }
+
+        byte[] newBytes() throws IOException {
+            if (failure != null) throw failure;
+            return newBytes;
+        }
 
-        Path oldRoot = Paths.get(oldProjectDir).toAbsolutePath().normalize();
-        Path newRoot = Paths.get(newProjectDir).toAbsolutePath().normalize();
-        Path outFile = Paths.get(outputJson).toAbsolutePath();
+        String oldSha1() throws IOException {
+            if (oldSha1 == null) oldSha1 = Helpers.sha1(oldBytes());
+            return oldSha1;
+        }
 
-        // 1) Collect all .java files by relative path for both roots.
-        //Map<String, Path> oldFiles = listJavaFiles(oldRoot);
-        //Map<String, Path> newFiles = listJavaFiles(newRoot);
+        String newSha1() throws IOException {
+            if (newSha1 == null) newSha1 = Helpers.sha1(newBytes());
+            return newSha1;
+        }
 
-        Set<String> exts = new HashSet<>(Arrays.asList(".java", ".kt"));
-        Map<String, Path> oldFiles = listCodeFiles(oldRoot, exts);
-        Map<String, Path> newFiles = listCodeFiles(newRoot, exts);
+        /** Strict UTF-8, like reading the file through a reader: malformed input fails the parse. */
+        String oldText() throws IOException {
+            return decode(oldBytes());
+        }
 
-        // 2) Build the union of relative paths and classify.
-        Set<String> allRelPaths = new TreeSet<>();
-        allRelPaths.addAll(oldFiles.keySet());
-        allRelPaths.addAll(newFiles.keySet());
+        String newText() throws IOException {
+            return decode(newBytes());
+        }
 
-        // 3) Prepare JSON-friendly structure.
+        private static String decode(byte[] bytes) throws IOException {
+            return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+        }
+    }
+
+    static Map<String, Object> reportHeader(Path oldRoot, Path newRoot) {
         Map<String, Object> report = new LinkedHashMap<>();
         report.put("before", oldRoot.toString());
         report.put("after", newRoot.toString());
         report.put("generatedAt", new Date().toString());
+        return report;
+    }
 
-        List<Map<String, Object>> files = new ArrayList<>();
-
-        // 4) For each path, compute edit scripts or mark added/removed.
+    /** Compute (or restore) the report entry for one planned pair. */
+    static FileEntry entryFor(FilePair pair, DiffOptions options, ChangeStats projectStats, SkipCounts counts) throws IOException {
+        return entryFor(pair, Sources.read(pair, options), options, projectStats, counts);
+    }
 
+    /** Same as {@link #entryFor(FilePair, DiffOptions, ChangeStats, SkipCounts)} with the files already read. */
+    static FileEntry entryFor(FilePair pair, Sources sources, DiffOptions options, ChangeStats projectStats,
+                              SkipCounts counts) throws IOException {
+        FileEntry entry = new FileEntry();
+        switch (pair.kind) {
+            case SAME_PATH:
+                return checkpointedEntry(pair.newRel, sources, options, projectStats, counts);
+            case IDENTICAL_RENAME:
+                entry.status = "renamed_file";
+                entry.oldPath = pair.oldRel;
+                entry.newPath = pair.newRel;
+                entry.actions = List.of(); // identical content => no edits
+                entry.diffTimeMs = 0L;
+                return entry;
+            case RENAME:
+                entry.status = "renamed_file";
+                entry.oldPath = pair.oldRel;
+                entry.newPath = pair.newRel;
+                try {
+                    diffPairCached(entry, sources, options, projectStats, counts);
 
+                } catch (Exception ex) {
+                    entry.fail(ex);
+                }
+                return entry;
+            case DELETED:
+                entry.path = pair.oldRel;
+                entry.status = "deleted_file";
+                entry.actions = List.of();
+                if (movesFromWholeFiles(options)) entry.declarations = movableSections(sources, true, options.language());
+                return entry;
+            default:
+                entry.path = pair.newRel;
+                entry.status = "added_file";
+                entry.actions = List.of();
+                if (movesFromWholeFiles(options)) entry.declarations = movableSections(sources, false, options.language());
+                return entry;
+        }
+    }
 
+    /** Move detection on full reports also pairs code with files that were added or deleted whole. */
+    private static boolean movesFromWholeFiles(DiffOptions options) {
+        return options.detectMoves() && options.reportMode() == DiffOptions.ReportMode.FULL;
+    }
 
-// Track which concrete paths we've already consumed, so we don't double-report
-        Set<Path> usedOld = new HashSet<>();
-        Set<Path> usedNew = new HashSet<>();
+    /**
+     * The top-level types and members of a deleted (old side) or added file as "removed" or "added"
+     * sections with their trees, so a {@link MoveDetector} sees code extracted into a new file or
+     * merged out of a deleted one. Null if the file cannot be read or parsed, or is not a JDT
+     * compilation unit; the entry then has no candidates, as before.
+     */
+    private static List<DeclarationEntry> movableSections(Sources sources, boolean old, String language) {
+        Tree root;
+        try {
+            root = old ? GeneratorDispatcher.parse(sources.oldFile, sources.oldText(), language)
+                    : GeneratorDispatcher.parse(sources.newFile, sources.newText(), language);
+        } catch (Exception e) {
+            return null;
+        }
+        if (!DeclarationDiff.supports(root)) return null;
+        List<DeclarationEntry> sections = new ArrayList<>();
+        for (DeclarationDiff.Declaration d : DeclarationDiff.movable(root)) {
+            DeclarationEntry section = new DeclarationEntry();
+            section.kind = d.kind;
+            section.signature = d.signature;
+            section.status = old ? "removed" : "added";
+            section.tree = d.tree;
+            sections.add(section);
+        }
+        return sections;
+    }
 
-// 1) Process files that exist at the same relative path in both versions
-        for (String rel : allRelPaths) {
-            Path oldPath = oldFiles.get(rel);
-            Path newPath = newFiles.get(rel);
-            if (oldPath != null && newPath != null) {
-                Map<String, Object> entry = new LinkedHashMap<>();
-                entry.put("path", rel);
-                try {
-                    long tStart = System.nanoTime();
+    /**
+     * The same-path entry, reusing the one a journaled earlier attempt finished for identical
+     * inputs. Error entries are not checkpointed, so they are retried.
+     */
+    private static FileEntry checkpointedEntry(String rel, Sources sources, DiffOptions options,
+                                               ChangeStats projectStats, SkipCounts skipped) throws IOException {
+        RunJournal.PairCheckpoint checkpoint = options.checkpoint();
+        JsonObject restored = null;
+        if (checkpoint != null) {
+            try {
+                restored = checkpoint.restore(rel, sources.oldSha1(), sources.newSha1());
+            } catch (IOException e) {
+                // unreadable input: diffed below into an error entry, which is not checkpointed
+            }
+        }
+        if (restored != null) {
+            FileEntry entry = FileEntry.ADAPTER.fromJsonTree(restored.get("entry"));
+            String skip = restored.has("skip") ? restored.get("skip").getAsString() : null;
+            if ("binary".equals(skip)) skipped.binary++;
+            if ("fingerprint".equals(skip)) skipped.fingerprint++;
+            if (projectStats != null) entry.addStatsTo(projectStats);
+            return entry;
+        }
 
-                    Map<EditScript, MappingStore> diffStorage = computeEditScript(oldPath, newPath, language);
+        int binaryBefore = skipped.binary;
+        int fingerprintBefore = skipped.fingerprint;
+        FileEntry entry = samePathEntry(rel, sources, options, projectStats, skipped);
+        if (checkpoint != null && !"error".equals(entry.status)) {
+            String skip = skipped.binary != binaryBefore ? "binary"
+                    : skipped.fingerprint != fingerprintBefore ? "fingerprint" : null;
+            checkpoint.record(rel, sources.oldSha1(), sources.newSha1(), entry, skip);
+        }
+        return entry;
+    }
 
-                    //EditScript script = computeEditScript(oldPath, newPath, language);
-                    long tookMs = msSince(tStart);
-                    entry.put("status", diffStorage.isEmpty() ? "unchanged" : "modified");
-                    for (EditScript key : diffStorage.keySet())
-                    {
-                        entry.put("actions", toActionList(key,diffStorage.get(key))); // may be empty if only renamed
-                    }
-                    entry.put("diffTimeMs", tookMs);  // <-- store time
-                } catch (Exception ex) {
-                    entry.put("status", "error");
-                    entry.put("error", ex.getClass().getSimpleName() + ": " + ex.getMessage());
-                    entry.put("actions", Collections.emptyList());
-                    entry.put("diffTimeMs", null);
-                }
-                files.add(entry);
-                usedOld.add(oldPath);
-                usedNew.add(newPath);
+    /** Report entry for a file that exists at the same relative path in both versions. */
+    private static FileEntry samePathEntry(String rel, Sources sources, DiffOptions options,
+                                   ChangeStats projectStats, SkipCounts skipped) {
+        Set<String> binaryUnchanged = options.binaryUnchangedSources();
+        FileEntry entry = new FileEntry();
+        entry.path = rel;
+        if (!binaryUnchanged.isEmpty() && isBinaryUnchanged(sources, binaryUnchanged)) {
+            // compiled classes are byte-identical: no need to parse either side
+            entry.status = "unchanged";
+            entry.actions = List.of();
+            entry.diffTimeMs = 0L;
+            skipped.binary++;
+            return entry;
+        }
+        try {
+            long tStart = System.nanoTime();
+
+            SourceFingerprint.Match match = options.skipFormattingOnly()
+                    ? SourceFingerprint.compare(sources.oldFile, sources.oldBytes(), sources.newFile, sources.newBytes())
+                    : SourceFingerprint.Match.DIFFERENT;
+            if (match != SourceFingerprint.Match.DIFFERENT) {
+                // same tokens on both sides: layout or comments only, nothing for GumTree to find
+                entry.status = match == SourceFingerprint.Match.IDENTICAL ? "unchanged" : "unchanged_semantics";
+                entry.actions = List.of();
+                skipped.fingerprint++;
+            } else {
+                entry.status = "modified";
+                boolean changed = diffPairCached(entry, sources, options, projectStats, skipped);
+                if (!changed) entry.status = "unchanged";
             }
+            entry.diffTimeMs = msSince(tStart);  // <-- store time
+        } catch (Exception ex) {
+            entry.status = "error";
+            entry.fail(ex);
+            entry.diffTimeMs = null;
         }
+        return entry;
+    }
 
-// 2) Build pools of unmatched files (candidates for add/delete/rename)
-        List<Path> oldOnly = oldFiles.values().stream().filter(p -> !usedOld.contains(p)).toList();
-        List<Path> newOnly = newFiles.values().stream().filter(p -> !usedNew.contains(p)).toList();
+    /**
+     * Rename detection over the files without a same-path counterpart, then added/deleted entries for
+     * whatever stays unmatched. Needs every unmatched file of both versions at once.
+     */
+    static void writeUnpairedEntries(ReportWriter out, Path oldRoot, Path newRoot, List<Path> oldOnly, List<Path> newOnly,
+                                     DiffOptions options, ChangeStats projectStats, SkipCounts counts) throws IOException {
+        DiffPipeline.run(pairUnmatched(oldRoot, newRoot, oldOnly, newOnly), options, projectStats, counts, out::element);
+    }
 
+    /**
+     * Pairs for the files without a same-path counterpart, in report order: identical-content renames,
+     * renames by type key or unique file name, then deleted and added files. Only hashes and type keys
+     * are read here; nothing is parsed.
+     */
+    static List<FilePair> pairUnmatched(Path oldRoot, Path newRoot, List<Path> oldOnly, List<Path> newOnly) {
+        List<FilePair> pairs = new ArrayList<>();
 // Precompute signals for rename detection
         Map<Path, String> oldSha = Helpers.computeSha1Map(oldOnly);
         Map<Path, String> newSha = Helpers.computeSha1Map(newOnly);
@@ -135,13 +378,8 @@ public class GumTreeExtractor {
                     .findFirst();
             if (match.isPresent()) {
                 Path o = match.get();
-                Map<String, Object> entry = new LinkedHashMap<>();
-                entry.put("status", "renamed_file");
-                entry.put("oldPath", Helpers.relativizeSafe(oldRoot, o));
-                entry.put("newPath", Helpers.relativizeSafe(newRoot, n));
-                entry.put("actions", Collections.emptyList()); // identical content => no edits
-                entry.put("diffTimeMs", 0L);
-                files.add(entry);
+                pairs.add(new FilePair(FilePair.Kind.IDENTICAL_RENAME, o, n,
+                        Helpers.relativizeSafe(oldRoot, o), Helpers.relativizeSafe(newRoot, n)));
                 pairedOld.add(o);
                 pairedNew.add(n);
             }
@@ -173,22 +411,8 @@ public class GumTreeExtractor {
             }
 
             if (o != null) {
-                Map<String, Object> entry = new LinkedHashMap<>();
-                entry.put("status", "renamed_file");
-                entry.put("oldPath", Helpers.relativizeSafe(oldRoot, o));
-                entry.put("newPath", Helpers.relativizeSafe(newRoot, n));
-                try {
-                    Map<EditScript, MappingStore> diffStorage = computeEditScript(o, n, language);
-                    for (EditScript key : diffStorage.keySet())
-                    {
-                        entry.put("actions", toActionList(key,diffStorage.get(key))); // may be empty if only renamed
-                    }
-
-                } catch (Exception ex) {
-                    entry.put("error", ex.getClass().getSimpleName() + ": " + ex.getMessage());
-                    entry.put("actions", Collections.emptyList());
-                }
-                files.add(entry);
+                pairs.add(new FilePair(FilePair.Kind.RENAME, o, n,
+                        Helpers.relativizeSafe(oldRoot, o), Helpers.relativizeSafe(newRoot, n)));
                 pairedOld.add(o);
                 pairedNew.add(n);
             }
@@ -197,30 +421,14 @@ public class GumTreeExtractor {
 // 3) Whatever is still unmatched is added/deleted
         for (Path o : oldOnly) {
             if (pairedOld.contains(o)) continue;
-            Map<String, Object> entry = new LinkedHashMap<>();
-            entry.put("path", Helpers.relativizeSafe(oldRoot, o));
-            entry.put("status", "deleted_file");
-            entry.put("actions", Collections.emptyList());
-            files.add(entry);
+            pairs.add(new FilePair(FilePair.Kind.DELETED, o, null, Helpers.relativizeSafe(oldRoot, o), null));
         }
 
         for (Path n : newOnly) {
             if (pairedNew.contains(n)) continue;
-            Map<String, Object> entry = new LinkedHashMap<>();
-            entry.put("path", Helpers.relativizeSafe(newRoot, n));
-            entry.put("status", "added_file");
-            entry.put("actions", Collections.emptyList());
-            files.add(entry);
+            pairs.add(new FilePair(FilePair.Kind.ADDED, null, n, null, Helpers.relativizeSafe(newRoot, n)));
         }
-
-        report.put("files", files);
-
-        // 5) Write pretty JSON.
-        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-        String json = gson.toJson(report);
-
-        Files.createDirectories(outFile.getParent());
-        Files.write(outFile, json.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        return pairs;
     }
 
     // ===== Helpers =====
@@ -242,32 +450,119 @@ public class GumTreeExtractor {
         }
     }
 
-    private static Map<EditScript, MappingStore> computeEditScript(Path oldFile, Path newFile, String language) throws IOException {
-        Tree src, dst;
-        Map<EditScript, MappingStore> results = new LinkedHashMap<>();
-        //System.out.println("Enter");
+    /** True if both files declare the same source key and the release jars say its classes did not change. */
+    private static boolean isBinaryUnchanged(Sources sources, Set<String> unchangedSources) {
+        try {
+            String oldKey = sourceKey(sources.oldFile, sources.oldText());
+            return oldKey.equals(sourceKey(sources.newFile, sources.newText())) && unchangedSources.contains(oldKey);
+        } catch (IOException e) {
+            return false; // fall back to a real diff
+        }
+    }
+
+    /** "pkg/path/File.java", the form javac records in the SourceFile attribute plus the package path. */
+    private static String sourceKey(Path file, String source) {
+        String pkg = extractPackage(source);
+        String name = file.getFileName().toString();
+        return pkg == null ? name : pkg.replace('.', '/') + "/" + name;
+    }
+
+    /**
+     * {@link #diffPair} through the options' {@link EditScriptCache}, if any: a hit copies the cached
+     * diff onto the entry (and its stats into the project totals) without parsing either file.
+     */
+    private static boolean diffPairCached(FileEntry entry, Sources sources, DiffOptions options,
+                                          ChangeStats projectStats, SkipCounts counts) throws IOException {
+        EditScriptCache cache = options.editScriptCache();
+        if (cache == null) return diffPair(entry, sources, options, projectStats);
+
+        String key = EditScriptCache.key(sources.oldSha1(), sources.newSha1(),
+                extensionOf(sources.oldFile), extensionOf(sources.newFile), cacheConfig(options));
+        EditScriptCache.Hit hit = cache.get(key);
+        if (hit != null) {
+            if (hit.fromDisk) counts.cacheDiskHits++;
+            else counts.cacheMemoryHits++;
+            entry.copyDiffFrom(hit.diff);
+            if (projectStats != null) hit.diff.addStatsTo(projectStats);
+            return hit.changed;
+        }
+        counts.cacheMisses++;
+        FileEntry diff = new FileEntry();
+        boolean changed = diffPair(diff, sources, options, projectStats);
+        entry.copyDiffFrom(diff);
+        cache.put(key, changed, diff);
+        return changed;
+    }
+
+    /** Everything besides the two inputs that shapes diffPair's fields. */
+    private static String cacheConfig(DiffOptions options) {
+        return MATCHER.get().getClass().getName() + "|" + SimplifiedChawatheScriptGenerator.class.getName()
+                + "|" + options.language() + "|" + options.granularity() + "|" + options.reportMode();
+    }
+
+    private static String extensionOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot).toLowerCase(Locale.ROOT);
+    }
 
-        if ("java".equalsIgnoreCase(language)) {
+    /**
+     * Diff one file pair into the entry according to the options' granularity and report mode.
+     * Returns false only when a declaration-level diff found every declaration identical.
+     */
+    private static boolean diffPair(FileEntry entry, Sources sources,
+                                    DiffOptions options, ChangeStats projectStats) throws IOException {
+        if (options.granularity() == DiffOptions.Granularity.FILE) {
+            putDiff(entry, computeEditScript(sources, options.language()), projectStats);
+            return true;
+        }
 
-            //src = new JavaTreeSitterNgTreeGenerator().generateFrom().file(oldFile.toString()).getRoot();
-            //dst = new JavaTreeSitterNgTreeGenerator().generateFrom().file(newFile.toString()).getRoot();
-            src = new JdtTreeGenerator().generateFrom().file(oldFile.toString()).getRoot();
-            dst = new JdtTreeGenerator().generateFrom().file(newFile.toString()).getRoot();
-        } else if ("kt".equalsIgnoreCase(language)) {
-            // Requires GumTree's Tree-Sitter NG generator on the classpath (see deps below).
-            // TreeGenerators will pick the proper Tree-Sitter parser based on file extension (.kt).
-            src = TreeGenerators.getInstance().getTree(oldFile.toString()).getRoot();
-            dst = TreeGenerators.getInstance().getTree(newFile.toString()).getRoot();
+        Tree src = GeneratorDispatcher.parse(sources.oldFile, sources.oldText(), options.language());
+        Tree dst = GeneratorDispatcher.parse(sources.newFile, sources.newText(), options.language());
+        if (!DeclarationDiff.supports(src) || !DeclarationDiff.supports(dst)) {
+            putDiff(entry, matchTrees(src, dst), projectStats);
+            return true;
+        }
 
-        } else {
-            // Fallback: let GumTree figure it out from file extension (works for other TS-NG languages too)
-            src = TreeGenerators.getInstance().getTree(oldFile.toString()).getRoot();
-            dst = TreeGenerators.getInstance().getTree(newFile.toString()).getRoot();
+        DeclarationDiff.Result result = DeclarationDiff.diff(src, dst);
+        List<DeclarationEntry> sections = new ArrayList<>();
+        for (DeclarationDiff.Change c : result.changes) {
+            DeclarationDiff.Declaration d = c.any();
+            DeclarationEntry section = new DeclarationEntry();
+            section.kind = d.kind;
+            section.signature = d.signature;
+            section.status = c.status;
+            if (c.diff != null) {
+                for (EditScript key : c.diff.keySet()) {
+                    if (projectStats != null) {
+                        ChangeStats stats = ChangeStats.of(key, d.owner);
+                        projectStats.add(stats);
+                        section.stats = stats;
+                    } else {
+                        section.actions = toActionList(key, c.diff.get(key));
+                    }
+                }
+            } else if (projectStats == null) {
+                section.tree = d.tree;
+            }
+            sections.add(section);
         }
+        entry.declarations = sections;
+        entry.unchangedDeclarations = result.unchanged;
+        return !sections.isEmpty();
+    }
 
+    private static Map<EditScript, MappingStore> computeEditScript(Sources sources, String language) throws IOException {
+        // Each side is parsed with the generator for its own extension; language only covers unknown ones.
+        Tree src = GeneratorDispatcher.parse(sources.oldFile, sources.oldText(), language);
+        Tree dst = GeneratorDispatcher.parse(sources.newFile, sources.newText(), language);
+        return matchTrees(src, dst);
+    }
 
-        Matcher defaultMatcher = Matchers.getInstance().getMatcher();
-        MappingStore mappings = defaultMatcher.match(src, dst);
+    /** Match two (sub)trees and derive the simplified Chawathe edit script. */
+    static Map<EditScript, MappingStore> matchTrees(Tree src, Tree dst) {
+        Map<EditScript, MappingStore> results = new LinkedHashMap<>();
+        MappingStore mappings = MATCHER.get().match(src, dst);
         EditScriptGenerator gen = new SimplifiedChawatheScriptGenerator();
         EditScript script = gen.computeActions(mappings);
         results.put(script,mappings);
@@ -279,19 +574,27 @@ public class GumTreeExtractor {
 
 
 
-    private static List<Map<String, Object>> toActionList(EditScript script, MappingStore map) {
-        List<Map<String, Object>> actions = new ArrayList<>();
-        script.forEach(a -> {
-            Map<String, Object> m = new LinkedHashMap<>();
-            m.put("action", a.getClass().getSimpleName()); // Insert, Delete, Update, Move, ...
-            Tree n = a.getNode();
-            m.put("nodeTree", toLisp(n));
-            m.put("treeBefore", toLisp(map.src));
-            m.put("treeAfter", toLisp(map.dst));
-
+    /**
+     * Store the edit script on the entry: the full action list, or in stats-only mode just the
+     * counts (no tree is serialized), which are also folded into the project totals.
+     */
+    private static void putDiff(FileEntry entry, Map<EditScript, MappingStore> diffStorage, ChangeStats projectStats) {
+        for (EditScript key : diffStorage.keySet()) {
+            if (projectStats != null) {
+                ChangeStats stats = ChangeStats.of(key);
+                projectStats.add(stats);
+                entry.stats = stats;
+            } else {
+                entry.actions = toActionList(key, diffStorage.get(key)); // may be empty if only renamed
+            }
+        }
+    }
 
-            actions.add(m);
-        });
+    /** Every action repeats both roots; they are serialized (on first use) once and the strings shared. */
+    private static List<ActionEntry> toActionList(EditScript script, MappingStore map) {
+        List<ActionEntry> actions = new ArrayList<>(script.size());
+        ActionEntry.Roots roots = new ActionEntry.Roots(map.src, map.dst);
+        script.forEach(a -> actions.add(new ActionEntry(a, roots)));
         return actions;
     }
 
@@ -320,6 +623,24 @@ public class GumTreeExtractor {
     public static void compareArchivesInRoot(String rootArchiveFolder,
                                              String extractBaseDir,
                                              String language) throws IOException {
+        compareArchivesInRoot(rootArchiveFolder, extractBaseDir, DiffOptions.forLanguage(language));
+    }
+
+    /**
+     * Same as {@link #compareArchivesInRoot(String, String, String)}, driven by {@link DiffOptions};
+     * with an output compression set, the reports are written as build/diff_*.json.gz (or .bz2, ...).
+     */
+    public static void compareArchivesInRoot(String rootArchiveFolder,
+                                             String extractBaseDir,
+                                             DiffOptions options) throws IOException {
+        compareArchivesInRoot(rootArchiveFolder, extractBaseDir, "build", options);
+    }
+
+    /** Same as {@link #compareArchivesInRoot(String, String, DiffOptions)}, writing the reports to reportDir. */
+    public static void compareArchivesInRoot(String rootArchiveFolder,
+                                             String extractBaseDir,
+                                             String reportDir,
+                                             DiffOptions options) throws IOException {
         Path root = Paths.get(rootArchiveFolder).toAbsolutePath().normalize();
 
         if (!Files.exists(root)) {
@@ -351,37 +672,60 @@ public class GumTreeExtractor {
         }
 
         // Ensure extraction base exists
-        Files.createDirectories(Paths.get(extractBaseDir));
-
-        // Extract each archive once
-        Map<Path, Path> extracted = new LinkedHashMap<>();
-        for (Path archive : archives) {
-            String baseName = stripArchiveExtension(archive.getFileName().toString());
-            Path destDir = Paths.get(extractBaseDir, baseName).toAbsolutePath().normalize();
-            System.out.println("Extracting " + archive + " → " + destDir);
-            extractArchive(archive.toString(), destDir.toString());
-            extracted.put(archive, destDir);
-        }
-
-        // Compare adjacent pairs
-        String rootName = root.getFileName().toString();
-        List<Path> list = new ArrayList<>(extracted.keySet());
-        for (int i = 0; i < list.size() - 1; i++) {
-            Path a = list.get(i);
-            Path b = list.get(i + 1);
-            Path aDir = extracted.get(a);
-            Path bDir = extracted.get(b);
-
-            String verA = stripArchiveExtension(a.getFileName().toString());
-            String verB = stripArchiveExtension(b.getFileName().toString());
-
-            Path out = Paths.get("build", "diff_" + rootName + "__" + verA + "_to_" + verB + ".json")
-                    .toAbsolutePath().normalize();
-
-            System.out.println("Comparing: " + verA + " → " + verB);
-            // If your saveProjectDiffToJson accepts a language param, pass "auto" (or "java"/"kotlin").
-            saveProjectDiffToJson(aDir.toString(), bDir.toString(), out.toString(), language);
-            System.out.println("  ✓ Wrote: " + out);
+        Path extractBase = Paths.get(extractBaseDir).toAbsolutePath().normalize();
+        Files.createDirectories(extractBase);
+
+        try (RunJournal journal = RunJournal.open(extractBase.resolve("run-journal.jsonl"), options.resume())) {
+            // Extract each archive once (or reuse a journaled extraction of the same content)
+            Map<Path, Path> extracted = new LinkedHashMap<>();
+            Map<Path, String> archiveSha1 = new HashMap<>();
+            for (Path archive : archives) {
+                String baseName = stripArchiveExtension(archive.getFileName().toString());
+                Path destDir = extractBase.resolve(baseName);
+                String sha1 = Helpers.sha1File(archive);
+                if (journal.isExtracted(sha1, destDir, options.extractFilter())) {
+                    System.out.println("Reusing extraction " + destDir);
+                } else {
+                    System.out.println("Extracting " + archive + " → " + destDir);
+                    Helpers.deleteRecursively(destDir); // partial output of an interrupted run
+                    ExtractStats stats = extractArchive(archive.toString(), destDir.toString(), options.extractFilter());
+                    System.out.println("  " + stats);
+                    journal.recordExtracted(archive, sha1, destDir, options.extractFilter(), stats);
+                }
+                extracted.put(archive, destDir);
+                archiveSha1.put(archive, sha1);
+            }
+
+            // Compare adjacent pairs
+            String rootName = root.getFileName().toString();
+            List<Path> list = new ArrayList<>(extracted.keySet());
+            for (int i = 0; i < list.size() - 1; i++) {
+                Path a = list.get(i);
+                Path b = list.get(i + 1);
+                Path aDir = extracted.get(a);
+                Path bDir = extracted.get(b);
+
+                String verA = stripArchiveExtension(a.getFileName().toString());
+                String verB = stripArchiveExtension(b.getFileName().toString());
+
+                Path out = Paths.get(reportDir, "diff_" + rootName + "__" + verA + "_to_" + verB + ".json" + options.outputCompression())
+                        .toAbsolutePath().normalize();
+
+                String key = RunJournal.pairKey(archiveSha1.get(a), archiveSha1.get(b), options);
+                if (journal.isPairDone(key, out)) {
+                    System.out.println("  ✓ Already done: " + out);
+                    continue;
+                }
+                System.out.println("Comparing: " + verA + " → " + verB);
+                try (RunJournal.PairCheckpoint checkpoint = journal.checkpoint(key)) {
+                    options.checkpoint(checkpoint);
+                    saveProjectDiffToJson(aDir.toString(), bDir.toString(), out.toString(), options);
+                } finally {
+                    options.checkpoint(null);
+                }
+                journal.recordPair(key, out);
+                System.out.println("  ✓ Wrote: " + out);
+            }
         }
     }
 
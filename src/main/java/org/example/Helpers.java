@@ -12,17 +12,12 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import com.github.gumtreediff.gen.TreeGenerators;
-import com.github.gumtreediff.gen.jdt.JdtTreeGenerator;
 import com.github.gumtreediff.tree.Tree;
 import com.github.gumtreediff.tree.TreeContext;
 import com.github.gumtreediff.tree.Type;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
-import org.apache.commons.compress.utils.IOUtils;
 
 import java.io.*;
 import java.nio.file.*;
@@ -47,15 +42,34 @@ public class Helpers {
     public static String sha1(byte[] data) {
         try {
             var md = java.security.MessageDigest.getInstance("SHA-1");
-            byte[] d = md.digest(data);
-            StringBuilder sb = new StringBuilder();
-            for (byte b : d) sb.append(String.format("%02x", b));
-            return sb.toString();
+            return toHex(md.digest(data));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /** SHA-1 of a file's content, streamed so large archives are never held in memory. */
+    public static String sha1File(Path file) throws IOException {
+        java.security.MessageDigest md;
+        try {
+            md = java.security.MessageDigest.getInstance("SHA-1");
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) > 0) md.update(buf, 0, n);
+        }
+        return toHex(md.digest());
+    }
+
+    private static String toHex(byte[] d) {
+        StringBuilder sb = new StringBuilder(d.length * 2);
+        for (byte b : d) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
     /**
      * Build a "type key" like "com.acme.foo#Main" using simple parsing.
      * If package/type can’t be extracted, fall back to the filename (without .java).
@@ -113,26 +127,18 @@ public class Helpers {
 
     /** Public helper: extract a ZIP into destDir (prevents Zip Slip); overwrites existing files. */
     public static void extractZipProject(String zipFilePath, String destDir) throws IOException {
+        extractZipProject(zipFilePath, destDir, ExtractFilter.all());
+    }
+
+    public static ExtractStats extractZipProject(String zipFilePath, String destDir, ExtractFilter filter) throws IOException {
         Path zipPath = Paths.get(zipFilePath).toAbsolutePath().normalize();
         Path targetDir = Paths.get(destDir).toAbsolutePath().normalize();
         if (!Files.exists(zipPath)) throw new IOException("ZIP not found: " + zipPath);
         Files.createDirectories(targetDir);
 
-        try (java.util.zip.ZipInputStream zis = new java.util.zip.ZipInputStream(Files.newInputStream(zipPath))) {
-            java.util.zip.ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                Path outPath = targetDir.resolve(entry.getName()).normalize();
-                if (!outPath.startsWith(targetDir))
-                    throw new IOException("Blocked Zip Slip entry: " + entry.getName());
-                if (entry.isDirectory()) {
-                    Files.createDirectories(outPath);
-                } else {
-                    Files.createDirectories(outPath.getParent());
-                    Files.copy(zis, outPath, StandardCopyOption.REPLACE_EXISTING);
-                }
-                zis.closeEntry();
-            }
-        }
+        ExtractStats stats = new ExtractStats();
+        extractZip(zipPath, targetDir, filter, stats);
+        return stats;
     }
 
 
@@ -165,186 +171,294 @@ public class Helpers {
     }
 
 
+    /**
+     * Directories never scanned for sources: VCS and IDE metadata, dependency caches, and (when the
+     * parent holds a build file) Maven/Gradle output.
+     */
+    public static final List<String> DEFAULT_SCAN_EXCLUDES = List.of(".git", ".hg", ".svn", ".idea", ".gradle", "node_modules");
+    private static final Set<String> BUILD_OUTPUT_DIRS = Set.of("build", "target");
+    /** A build/ or target/ dir next to one of these is build output; archive runs extract them for that. */
+    static final List<String> BUILD_FILES = List.of("pom.xml", "build.gradle", "build.gradle.kts", "build.xml");
+
     public static Map<String, Path> listCodeFiles(Path root, Set<String> extensions) throws IOException {
+        return listCodeFiles(root, extensions, List.of());
+    }
+
+    /**
+     * Code files under root keyed by '/'-separated relative path, sorted. Excluded directories are
+     * pruned with their whole subtree. A glob without '/' is matched against the file or directory
+     * name (e.g. "generated"), otherwise against the relative path (e.g. "src/test/**"). The
+     * {@link #DEFAULT_SCAN_EXCLUDES} always apply. The top-level subdirectories are walked in parallel.
+     */
+    public static Map<String, Path> listCodeFiles(Path root, Set<String> extensions, List<String> excludes) throws IOException {
         if (!Files.isDirectory(root)) {
             throw new IOException("Not a directory: " + root);
         }
-        final Set<String> extsLower = extensions.stream()
-                .map(s -> s.toLowerCase(Locale.ROOT))
-                .collect(Collectors.toSet());
+        CodeFileScan scan = new CodeFileScan(root, extensions, excludes);
+
+        List<Path> topDirs = new ArrayList<>();
+        Map<String, Path> result = new TreeMap<>();
+        try (Stream<Path> children = Files.list(root)) {
+            for (Path child : (Iterable<Path>) children::iterator) {
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    if (!scan.prunes(child)) topDirs.add(child);
+                } else if (Files.isRegularFile(child)) {
+                    scan.collect(child, result);
+                }
+            }
+        }
 
-        try (Stream<Path> stream = Files.walk(root)) {
-            return stream
-                    .filter(Files::isRegularFile)
-                    .filter(p -> {
-                        String name = p.getFileName().toString().toLowerCase(Locale.ROOT);
-                        for (String ext : extsLower) {
-                            if (name.endsWith(ext)) return true;
-                        }
-                        return false;
-                    })
-                    .collect(Collectors.toMap(
-                            p -> root.relativize(p).toString().replace('\\', '/'),
-                            p -> p,
-                            (a, b) -> a,          // keep first on collision
-                            TreeMap::new          // sorted by relative path
-                    ));
+        List<Map<String, Path>> parts = new ArrayList<>();
+        try {
+            for (Map<String, Path> part : topDirs.parallelStream().map(dir -> {
+                try {
+                    return scan.walk(dir);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList())) {
+                parts.add(part);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (Map<String, Path> part : parts) result.putAll(part);
+        return result;
+    }
+
+    /** One listCodeFiles run: the extension lookup and exclude matchers, shared by the parallel walks. */
+    private static final class CodeFileScan {
+        private final Path root;
+        private final Set<String> extensions = new HashSet<>();
+        private final int[] extensionLengths;
+        private final Set<String> excludedNames = new HashSet<>();
+        private final List<PathMatcher> nameMatchers = new ArrayList<>();
+        private final List<PathMatcher> pathMatchers = new ArrayList<>();
+
+        CodeFileScan(Path root, Set<String> exts, List<String> excludes) {
+            this.root = root;
+            for (String e : exts) extensions.add(e.toLowerCase(Locale.ROOT));
+            this.extensionLengths = extensions.stream().mapToInt(String::length).distinct().toArray();
+            List<String> all = new ArrayList<>(DEFAULT_SCAN_EXCLUDES);
+            all.addAll(excludes);
+            for (String glob : all) {
+                if (glob.indexOf('/') >= 0) {
+                    pathMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+                } else if (glob.chars().noneMatch(c -> "*?[{".indexOf(c) >= 0)) {
+                    excludedNames.add(glob); // plain name: hash lookup
+                } else {
+                    nameMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+                }
+            }
+        }
+
+        Map<String, Path> walk(Path dir) throws IOException {
+            Map<String, Path> found = new HashMap<>();
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, java.nio.file.attribute.BasicFileAttributes attrs) {
+                    return d.equals(dir) || !prunes(d) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, java.nio.file.attribute.BasicFileAttributes attrs) {
+                    // links are not followed into directories, but a link to a file counts (as with Files.walk)
+                    if (attrs.isRegularFile() || (attrs.isSymbolicLink() && Files.isRegularFile(file))) collect(file, found);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return found;
+        }
+
+        /** True if the directory and everything below it is skipped. */
+        boolean prunes(Path dir) {
+            String name = dir.getFileName().toString();
+            if (BUILD_OUTPUT_DIRS.contains(name)) {
+                for (String buildFile : BUILD_FILES) {
+                    if (Files.isRegularFile(dir.resolveSibling(buildFile))) return true;
+                }
+            }
+            return excluded(dir, name);
+        }
+
+        void collect(Path file, Map<String, Path> into) {
+            String name = file.getFileName().toString();
+            if (!hasExtension(name) || excluded(file, name)) return;
+            into.putIfAbsent(relativizeSafe(root, file), file);
+        }
+
+        private boolean hasExtension(String name) {
+            for (int len : extensionLengths) {
+                if (name.length() >= len
+                        && extensions.contains(name.substring(name.length() - len).toLowerCase(Locale.ROOT))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean excluded(Path p, String name) {
+            if (excludedNames.contains(name)) return true;
+            if (!nameMatchers.isEmpty()) {
+                Path n = p.getFileName();
+                for (PathMatcher m : nameMatchers) if (m.matches(n)) return true;
+            }
+            if (!pathMatchers.isEmpty()) {
+                Path rel = root.relativize(p);
+                for (PathMatcher m : pathMatchers) if (m.matches(rel)) return true;
+            }
+            return false;
         }
     }
 
 
 
      public static void extractArchive(String archivePath, String destDir) throws IOException {
+     extractArchive(archivePath, destDir, ExtractFilter.all());
+     }
+
+     /** Extract only the entries the filter accepts; skipped entries are never written. */
+     public static ExtractStats extractArchive(String archivePath, String destDir, ExtractFilter filter) throws IOException {
      Path archive = Paths.get(archivePath).toAbsolutePath().normalize();
      Path targetDir = Paths.get(destDir).toAbsolutePath().normalize();
      Files.createDirectories(targetDir);
 
+     ExtractStats stats = new ExtractStats();
      String n = archive.getFileName().toString().toLowerCase(Locale.ROOT);
      if (n.endsWith(".zip")) {
-     extractZip(archive, targetDir);
+     extractZip(archive, targetDir, filter, stats);
      } else if (n.endsWith(".tar.gz") || n.endsWith(".tgz")) {
-     extractTarGz(archive, targetDir);
+     extractTarGz(archive, targetDir, filter, stats);
      } else if (n.endsWith(".gz")) {
-     extractGenericGz(archive, targetDir); // .gz that might be tar/zip or a single file
+     extractGenericGz(archive, targetDir, filter, stats); // .gz that might be tar/zip or a single file
      } else {
      throw new IOException("Unsupported archive format: " + n);
      }
+     return stats;
      }
 
      // --- ZIP (.zip) ---
-     private static void extractZip(Path zip, Path targetDir) throws IOException {
-     try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zip))) {
-     ZipEntry entry;
-     while ((entry = zis.getNextEntry()) != null) {
-     Path outPath = safeResolve(targetDir, entry.getName());
-     if (entry.isDirectory()) {
-     Files.createDirectories(outPath);
-     } else {
-     Files.createDirectories(outPath.getParent());
-     try (OutputStream out = Files.newOutputStream(outPath)) {
-     IOUtils.copy(zis, out);
-     }
-     }
-     zis.closeEntry();
-     }
+     private static void extractZip(Path zip, Path targetDir, ExtractFilter filter, ExtractStats stats) throws IOException {
+     try (InputStream in = new BufferedInputStream(Files.newInputStream(zip), COPY_BUFFER)) {
+     extractZipStream(in, targetDir, filter, stats);
      }
      }
 
      // --- TAR.GZ (.tar.gz / .tgz) ---
-     private static void extractTarGz(Path archive, Path targetDir) throws IOException {
+     private static void extractTarGz(Path archive, Path targetDir, ExtractFilter filter, ExtractStats stats) throws IOException {
      try (InputStream fi = Files.newInputStream(archive);
-     BufferedInputStream bi = new BufferedInputStream(fi);
-     GzipCompressorInputStream gzi = new GzipCompressorInputStream(bi);
-     TarArchiveInputStream tis = new TarArchiveInputStream(gzi)) {
-
-     ArchiveEntry entry;
-     while ((entry = tis.getNextEntry()) != null) {
-     Path outPath = safeResolve(targetDir, entry.getName());
-     if (entry.isDirectory()) {
-     Files.createDirectories(outPath);
-     } else {
-     Files.createDirectories(outPath.getParent());
-     try (OutputStream out = Files.newOutputStream(outPath)) {
-     IOUtils.copy(tis, out);
-     }
-     }
-     }
+     BufferedInputStream bi = new BufferedInputStream(fi, COPY_BUFFER);
+     GzipCompressorInputStream gzi = new GzipCompressorInputStream(bi)) {
+     extractTarStream(gzi, targetDir, filter, stats);
      }
      }
 
-     /**
-     * Handle generic .gz:
-     * 1) gunzip to a temp file
-     * 2) if it's a TAR → extract TAR
-     * 3) else if it's a ZIP → extract ZIP
-     * 4) else → treat as a single file (write it under targetDir/<originalNameSansGz>)
-     */
+    /** A tar header is one 512-byte block; zip local headers start with PK\3\4. */
+    private static final int SNIFF_BYTES = 512;
+
+    /** Read and write chunk for extraction: few, large writes per file. */
+    private static final int COPY_BUFFER = 256 * 1024;
+
     public static void extractGenericGz(Path gz, Path targetDir) throws IOException {
-        Path tmp = Files.createTempFile("ungz_", ".bin");
+        extractGenericGz(gz, targetDir, ExtractFilter.all(), new ExtractStats());
+    }
+
+    /**
+     * Handle generic .gz in a single pass over the decompressed stream: the first block is sniffed
+     * (mark/reset) and the same stream goes on to the TAR or ZIP extractor, or is written as a single
+     * file under targetDir/&lt;originalNameSansGz&gt;. Nothing is decompressed twice or staged in a temp file.
+     */
+    private static void extractGenericGz(Path gz, Path targetDir, ExtractFilter filter, ExtractStats stats) throws IOException {
         try (InputStream in = Files.newInputStream(gz);
-             BufferedInputStream bin = new BufferedInputStream(in);
+             BufferedInputStream bin = new BufferedInputStream(in, COPY_BUFFER);
              GzipCompressorInputStream gzi = new GzipCompressorInputStream(bin);
-             OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.TRUNCATE_EXISTING)) {
-            IOUtils.copy(gzi, out);
+             BufferedInputStream data = new BufferedInputStream(gzi, COPY_BUFFER)) {
+
+            data.mark(SNIFF_BYTES);
+            byte[] header = data.readNBytes(SNIFF_BYTES);
+            data.reset();
+
+            if (isZipHeader(header)) {
+                extractZipStream(data, targetDir, filter, stats);
+            } else if (isTarHeader(header)) {
+                extractTarStream(data, targetDir, filter, stats);
+            } else {
+                String base = stripGzExtension(gz.getFileName().toString());
+                if (filter.accepts(base)) {
+                    writeEntry(data, safeResolve(targetDir, base), new byte[COPY_BUFFER], stats);
+                } else {
+                    stats.skipped(-1);
+                }
+            }
         }
+    }
 
-        try {
-            if (isTarFile(tmp)) {
-                extractTarFromFile(tmp, targetDir);
-                return;
-            }
-            if (isZipFile(tmp)) {
-                extractZipFromFile(tmp, targetDir);
-                return;
+    // --- Stream extractors (the caller owns and closes the stream) ---
+    private static void extractTarStream(InputStream in, Path targetDir, ExtractFilter filter, ExtractStats stats) throws IOException {
+        TarArchiveInputStream tis = new TarArchiveInputStream(in);
+        byte[] buf = new byte[COPY_BUFFER];
+        ArchiveEntry entry;
+        while ((entry = tis.getNextEntry()) != null) {
+            // skipped entries are passed over by getNextEntry; tar headers always carry the size
+            if (entry.isDirectory()) {
+                if (filter.acceptsEverything()) Files.createDirectories(safeResolve(targetDir, entry.getName()));
+            } else if (filter.accepts(entry.getName())) {
+                writeEntry(tis, safeResolve(targetDir, entry.getName()), buf, stats);
+            } else {
+                stats.skipped(entry.getSize());
             }
-            // Single file: move it to targetDir with name sans ".gz"
-            String base = stripGzExtension(gz.getFileName().toString());
-            Path outFile = targetDir.resolve(base).normalize();
-            Files.createDirectories(outFile.getParent());
-            Files.move(tmp, outFile, StandardCopyOption.REPLACE_EXISTING);
-        } finally {
-            // if we didn't move it (single-file case handles move), ensure temp is gone
-            try { Files.deleteIfExists(tmp); } catch (IOException ignore) {}
         }
     }
 
-    // --- Helpers for reading TAR/ZIP from an already-decompressed file ---
-    private static void extractTarFromFile(Path tarFile, Path targetDir) throws IOException {
-        try (InputStream fi = Files.newInputStream(tarFile);
-             BufferedInputStream bi = new BufferedInputStream(fi);
-             TarArchiveInputStream tis = new TarArchiveInputStream(bi)) {
-
-            ArchiveEntry entry;
-            while ((entry = tis.getNextEntry()) != null) {
-                Path outPath = safeResolve(targetDir, entry.getName());
-                if (entry.isDirectory()) {
-                    Files.createDirectories(outPath);
-                } else {
-                    Files.createDirectories(outPath.getParent());
-                    try (OutputStream out = Files.newOutputStream(outPath)) {
-                        IOUtils.copy(tis, out);
-                    }
-                }
+    private static void extractZipStream(InputStream in, Path targetDir, ExtractFilter filter, ExtractStats stats) throws IOException {
+        ZipInputStream zis = new ZipInputStream(in);
+        byte[] buf = new byte[COPY_BUFFER];
+        ZipEntry entry;
+        while ((entry = zis.getNextEntry()) != null) {
+            if (entry.isDirectory()) {
+                if (filter.acceptsEverything()) Files.createDirectories(safeResolve(targetDir, entry.getName()));
+            } else if (filter.accepts(entry.getName())) {
+                writeEntry(zis, safeResolve(targetDir, entry.getName()), buf, stats);
+            } else {
+                // the size is only known after the data when the entry uses a data descriptor
+                stats.skipped(entry.getSize() >= 0 ? entry.getSize() : zis.transferTo(OutputStream.nullOutputStream()));
             }
+            zis.closeEntry();
         }
     }
 
-    private static void extractZipFromFile(Path zipFile, Path targetDir) throws IOException {
-        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zipFile))) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                Path outPath = safeResolve(targetDir, entry.getName());
-                if (entry.isDirectory()) {
-                    Files.createDirectories(outPath);
-                } else {
-                    Files.createDirectories(outPath.getParent());
-                    try (OutputStream out = Files.newOutputStream(outPath)) {
-                        IOUtils.copy(zis, out);
-                    }
-                }
-                zis.closeEntry();
+    /**
+     * Copy the current entry to outPath in buffer-sized writes (replacing an existing file). The
+     * caller passes one {@link #COPY_BUFFER} buffer for all entries of an archive.
+     */
+    private static void writeEntry(InputStream in, Path outPath, byte[] buf, ExtractStats stats) throws IOException {
+        Files.createDirectories(outPath.getParent());
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(outPath)) {
+            int n;
+            while ((n = in.readNBytes(buf, 0, buf.length)) > 0) {
+                out.write(buf, 0, n);
+                total += n;
             }
         }
+        stats.filesWritten++;
+        stats.bytesWritten += total;
     }
 
-    // --- Type sniffers ---
-    private static boolean isZipFile(Path file) throws IOException {
+    // --- Type sniffers (on the first decompressed block) ---
+    private static boolean isZipHeader(byte[] h) {
         // ZIP local file header signature: 50 4B 03 04 (PK..)
-        byte[] sig = new byte[4];
-        try (InputStream in = Files.newInputStream(file)) {
-            if (in.read(sig) < 4) return false;
-        }
-        return sig[0] == 0x50 && sig[1] == 0x4B && sig[2] == 0x03 && sig[3] == 0x04;
+        return h.length >= 4 && h[0] == 0x50 && h[1] == 0x4B && h[2] == 0x03 && h[3] == 0x04;
     }
 
-    private static boolean isTarFile(Path file) throws IOException {
-        // Quick heuristic: try opening as TAR and seeing if we can read at least one entry
-        try (InputStream fi = Files.newInputStream(file);
-             BufferedInputStream bi = new BufferedInputStream(fi);
-             TarArchiveInputStream tis = new TarArchiveInputStream(bi)) {
-            return tis.getNextEntry() != null; // if readable and has entries → it's a tar
-        } catch (Exception e) {
-            return false;
+    private static boolean isTarHeader(byte[] h) {
+        // ustar/GNU magic at offset 257, or a pre-POSIX header whose checksum adds up
+        if (h.length < SNIFF_BYTES) return false;
+        if (TarArchiveInputStream.matches(h, h.length)) return true;
+        try {
+            return h[0] != 0 && org.apache.commons.compress.archivers.tar.TarUtils.verifyCheckSum(h);
+        } catch (IllegalArgumentException e) {
+            return false; // checksum field is not octal
         }
     }
 
@@ -366,6 +480,14 @@ public class Helpers {
     }
 
 
+    /** Delete a file or directory tree; missing paths are ignored. */
+    public static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> s = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+        }
+    }
+
     public static long msSince(long startNano) {
         return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNano);
     }
@@ -386,16 +508,7 @@ public class Helpers {
         Map<String, Object> node = new LinkedHashMap<>();
         node.put("path", relPath);
         try {
-            Tree root;
-            TreeContext tc;
-            if ("java".equalsIgnoreCase(language)) {
-                root = new JdtTreeGenerator().generateFrom().file(file.toString()).getRoot();
-                //root = tc.getRoot();
-
-            }  else {
-                root = com.github.gumtreediff.gen.TreeGenerators.getInstance()
-                        .getTree(file.toString()).getRoot();
-            }
+            Tree root = GeneratorDispatcher.parse(file, language);
             node.put("tree", serializeTreeNoPos(root));  // GumTree's formatted representation
         } catch (Exception ex) {
             node.put("error", ex.getClass().getSimpleName() + ": " + ex.getMessage());
@@ -430,15 +543,9 @@ public class Helpers {
         return obj;
     }
 
-    /** Parse file with the right frontend. language = "java"|"kotlin"|"auto". */
+    /** Parse file with the right frontend for its extension; language = "java"|"kotlin"|"auto" is the fallback hint. */
     private static Tree parseToGumTree(Path file, String language) throws IOException {
-        String lang = !"auto".equalsIgnoreCase(language) ? language : detectLanguage(file);
-        if ("java".equalsIgnoreCase(lang)) {
-            return new JdtTreeGenerator().generateFrom().file(file.toString()).getRoot();
-        }  else {
-            // fallback to registry (works if other generators are wired)
-            return TreeGenerators.getInstance().getTree(file.toString()).getRoot();
-        }
+        return GeneratorDispatcher.parse(file, language);
     }
 
     private static Map<String, Object> toSimpleNode(Tree t, String source, java.util.concurrent.atomic.AtomicLong idGen) {
@@ -529,97 +636,173 @@ public class Helpers {
         Map<String, Path> oldFiles = listCodeFiles(oldRoot, exts);
         Map<String, Path> newFiles = listCodeFiles(newRoot, exts);
 
-        List<Map<String, Object>> oldTrees = new ArrayList<>();
-        List<Map<String, Object>> newTrees = new ArrayList<>();
+        // Trees are streamed one file at a time instead of holding both projects in memory
+        try (ReportWriter out = new ReportWriter(outFile)) {
+            out.fields(report);
 
-        // Extract ASTs for each file in old project
-        for (Map.Entry<String, Path> e : oldFiles.entrySet()) {
-            oldTrees.add(simplifiedFileTree(e.getKey(), e.getValue(), language));
-        }
+            // Extract ASTs for each file in old project
+            out.beginArray("oldProjectTrees");
+            for (Map.Entry<String, Path> e : oldFiles.entrySet()) {
+                out.element(simplifiedFileTree(e.getKey(), e.getValue(), language));
+            }
+            out.endArray();
 
-        // Extract ASTs for each file in new project
-        for (Map.Entry<String, Path> e : newFiles.entrySet()) {
-            newTrees.add(simplifiedFileTree(e.getKey(), e.getValue(), language));
+            // Extract ASTs for each file in new project
+            out.beginArray("newProjectTrees");
+            for (Map.Entry<String, Path> e : newFiles.entrySet()) {
+                out.element(simplifiedFileTree(e.getKey(), e.getValue(), language));
+            }
+            out.endArray();
         }
-
-        report.put("oldProjectTrees", oldTrees);
-        report.put("newProjectTrees", newTrees);
-
-        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-        byte[] json = gson.toJson(report).getBytes(StandardCharsets.UTF_8);
-        Files.write(outFile, json, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         System.out.println("✅ Source code trees exported to: " + outFile);
     }
 
 
+    /** Packages {@link #extractJdkSqlSources} keeps. */
+    public static final List<String> JDK_SQL_PACKAGES = List.of("java/sql/", "javax/sql/", "jdk/sql/");
+
     public static void extractJdkSqlSources(Path root, Path outputDir) throws IOException {
+        extractJdkSources(root, outputDir, JDK_SQL_PACKAGES);
+    }
+
+    /**
+     * Extract the sources of the given packages (e.g. "java/sql/") from the src.zip of the JDK under root.
+     * Returns the number of files written.
+     */
+    public static int extractJdkSources(Path root, Path outputDir, List<String> packagePrefixes) throws IOException {
         Path srcZip = findSrcZipUnder(root);
         if (srcZip == null) {
             throw new IOException("No lib/src.zip found under: " + root);
         }
-
-        Files.createDirectories(outputDir);
         System.out.println("Using src.zip: " + srcZip);
+        int written = extractPackagesFromZip(srcZip, outputDir, packagePrefixes);
+        System.out.println("Extracted " + written + " files of " + packagePrefixes + " into: " + outputDir);
+        return written;
+    }
 
-        try (InputStream in = Files.newInputStream(srcZip);
-             ZipInputStream zis = new ZipInputStream(in)) {
-
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                String name = entry.getName();
-
-                // Allowed packages: just SQL
-                boolean isSqlFolder =
-                        name.startsWith("java/sql/")
-                                || name.startsWith("javax/sql/")
-                                || name.startsWith("jdk/sql/");
+    /**
+     * {@link #extractJdkSources} for several JDK installs at once, each into outputBase/&lt;install dir name&gt;,
+     * on up to {@code threads} threads. Returns the output dir of every root, in input order.
+     */
+    public static Map<Path, Path> extractJdkSources(List<Path> jdkRoots, Path outputBase, List<String> packagePrefixes,
+                                                    int threads) throws IOException {
+        Map<Path, Path> outputs = new LinkedHashMap<>();
+        for (Path root : jdkRoots) {
+            Path out = outputBase.resolve(root.toAbsolutePath().normalize().getFileName().toString());
+            if (outputs.containsValue(out)) throw new IOException("Two JDK roots map to the same output dir: " + out);
+            outputs.put(root, out);
+        }
 
-                // Skip everything except SQL
-                if (!isSqlFolder) {
-                    continue;
+        java.util.concurrent.ExecutorService pool =
+                java.util.concurrent.Executors.newFixedThreadPool(Math.max(1, Math.min(threads, jdkRoots.size())));
+        try {
+            List<java.util.concurrent.Future<Integer>> results = new ArrayList<>();
+            for (Map.Entry<Path, Path> e : outputs.entrySet()) {
+                results.add(pool.submit(() -> extractJdkSources(e.getKey(), e.getValue(), packagePrefixes)));
+            }
+            for (java.util.concurrent.Future<Integer> f : results) {
+                try {
+                    f.get();
+                } catch (java.util.concurrent.ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    throw new IOException(cause);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while extracting JDK sources");
                 }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return outputs;
+    }
 
-                // Destination under the output SQL folder:
-                Path destPath = outputDir.resolve(name).normalize();
+    /**
+     * Copy the entries under any of the package prefixes out of a zip. Entries are located through the
+     * central directory, so only matching entries are read and decompressed. JDK 9+ src.zip nests
+     * packages under a module directory ("java.sql/java/sql/..."); such entries match too and keep
+     * their full name.
+     */
+    private static int extractPackagesFromZip(Path zip, Path outputDir, List<String> packagePrefixes) throws IOException {
+        Files.createDirectories(outputDir);
+        int written = 0;
+        try (java.util.zip.ZipFile zf = new java.util.zip.ZipFile(zip.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zf.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !inPackages(entry.getName(), packagePrefixes)) continue;
+
+                Path destPath = outputDir.resolve(entry.getName()).normalize();
                 checkZipSlip(outputDir, destPath);
-
-                // Ensure parent folders exist
-                if (entry.isDirectory()) {
-                    Files.createDirectories(destPath);
-                } else {
-                    Files.createDirectories(destPath.getParent());
-                    Files.copy(zis, destPath, StandardCopyOption.REPLACE_EXISTING);
+                Files.createDirectories(destPath.getParent());
+                try (InputStream in = zf.getInputStream(entry)) {
+                    Files.copy(in, destPath, StandardCopyOption.REPLACE_EXISTING);
                 }
-
-                zis.closeEntry();
+                written++;
             }
         }
+        return written;
+    }
 
-        System.out.println("Extracted all SQL Java files into: " + outputDir);
+    private static boolean inPackages(String name, List<String> packagePrefixes) {
+        int slash = name.indexOf('/');
+        String withoutModule = slash < 0 ? name : name.substring(slash + 1);
+        for (String prefix : packagePrefixes) {
+            if (name.startsWith(prefix) || withoutModule.startsWith(prefix)) return true;
+        }
+        return false;
     }
 
+    /** Directories of a JDK install that never contain lib/src.zip further down. */
+    private static final Set<String> NON_SOURCE_JDK_DIRS = Set.of(
+            "bin", "conf", "include", "jmods", "legal", "man", "demo", "sample");
+
     /**
-     * Recursively search for a src.zip whose parent folder is named "lib".
-     * Returns the first match found, or null if none.
+     * Search for a src.zip whose parent folder is named "lib" (first match in walk order), or null.
+     * Each directory is probed for {@code lib/src.zip} directly, and the walk prunes: a JDK home (a dir
+     * with a "release" file) without one is not entered, nor are hidden dirs and bin, include, jmods, ...
      */
     private static Path findSrcZipUnder(Path root) throws IOException {
         if (!Files.isDirectory(root)) {
             throw new IOException("Root is not a directory: " + root);
         }
 
-        try (var stream = Files.walk(root)) {
-            return stream
-                    .filter(Files::isRegularFile)
-                    .filter(p -> p.getFileName().toString().equalsIgnoreCase("src.zip"))
-                    .filter(p -> {
-                        Path parent = p.getParent();
-                        return parent != null &&
-                                parent.getFileName() != null &&
-                                parent.getFileName().toString().equalsIgnoreCase("lib");
-                    })
-                    .findFirst()
-                    .orElse(null);
-        }
+        Path[] found = new Path[1];
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, java.nio.file.attribute.BasicFileAttributes attrs) {
+                Path candidate = dir.resolve("lib").resolve("src.zip");
+                if (Files.isRegularFile(candidate)) {
+                    found[0] = candidate;
+                    return FileVisitResult.TERMINATE;
+                }
+                String name = dir.getFileName() == null ? "" : dir.getFileName().toString();
+                if (!dir.equals(root) && (name.startsWith(".") || NON_SOURCE_JDK_DIRS.contains(name)
+                        || Files.isRegularFile(dir.resolve("release")))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, java.nio.file.attribute.BasicFileAttributes attrs) {
+                // other spellings, e.g. LIB/SRC.ZIP
+                Path parent = file.getParent();
+                if (file.getFileName().toString().equalsIgnoreCase("src.zip") && parent != null
+                        && parent.getFileName() != null && parent.getFileName().toString().equalsIgnoreCase("lib")) {
+                    found[0] = file;
+                    return FileVisitResult.TERMINATE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE; // unreadable entries are skipped
+            }
+        });
+        return found[0];
     }
 
     /** Simple Zip-Slip protection. */
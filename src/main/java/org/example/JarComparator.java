@@ -4,29 +4,170 @@ import japicmp.cmp.JApiCmpArchive;
 import japicmp.cmp.JarArchiveComparator;
 import japicmp.cmp.JarArchiveComparatorOptions;
 import japicmp.model.JApiClass;
+import javassist.bytecode.ClassFile;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 public class JarComparator {
 
+    /** Upper bound on the number of distinct jars whose class index is kept in memory. */
+    private static final int MAX_CACHED_JARS = 64;
+
+    /** Options are immutable for our use, so one instance serves every comparison of a batch. */
+    private static final JarArchiveComparatorOptions OPTIONS = new JarArchiveComparatorOptions();
+
+    /**
+     * "path|size|mtime" -> class index; access-ordered so the least recently used jar is evicted first.
+     * It serves {@link #unchangedSourceFiles} (consecutive release pairs share a jar, and a daemon keeps
+     * it across jobs). japicmp does not use it: {@link #compareJars} reads both jars itself.
+     */
+    private static final Map<String, JarMetadata> METADATA_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, JarMetadata> eldest) {
+                    return size() > MAX_CACHED_JARS;
+                }
+            });
+
+    /**
+     * Class-level metadata of a jar: for every .class entry, the binary class name
+     * (e.g. "org.apache.log4j.Logger$1") mapped to the SHA-1 of its bytes and to the source file it
+     * was compiled from (e.g. "org/apache/log4j/Logger.java").
+     */
+    public static final class JarMetadata {
+        private final Map<String, String> classHashes;
+        private final Map<String, String> classSources;
+
+        JarMetadata(Map<String, String> classHashes, Map<String, String> classSources) {
+            this.classHashes = classHashes;
+            this.classSources = classSources;
+        }
+
+        public Map<String, String> classHashes() { return classHashes; }
+
+        public Map<String, String> classSources() { return classSources; }
+    }
+
     public static void compareJarfiles(File fileBefore, String versionBefore, File fileAfter, String versionAfter ){
 
+        List<JApiClass> jApiClasses = compareJars(fileBefore, versionBefore, fileAfter, versionAfter);
+
+        for (JApiClass c : jApiClasses){
+
+                System.out.println(c);
+            }
+
+
+    }
+
+    /** Run japicmp on one pair of jars. */
+    public static List<JApiClass> compareJars(File fileBefore, String versionBefore, File fileAfter, String versionAfter) {
         JApiCmpArchive beforeArchive = new JApiCmpArchive(fileBefore,versionBefore);
         JApiCmpArchive afterArchive = new JApiCmpArchive(fileAfter,versionAfter);
 
+        JarArchiveComparator jarArchiveComparator = new JarArchiveComparator(OPTIONS);
+        return jarArchiveComparator.compare(beforeArchive,afterArchive);
+    }
 
-        JarArchiveComparatorOptions comparatorOptions = new JarArchiveComparatorOptions();
-        JarArchiveComparator jarArchiveComparator = new JarArchiveComparator(comparatorOptions);
-        List<JApiClass> jApiClasses = jarArchiveComparator.compare(beforeArchive,afterArchive);
+    /**
+     * Compare a release history pairwise (jars[i] vs jars[i+1]). japicmp loads and analyses both jars
+     * of every pair itself, so a middle jar is analysed by both of its pairs; it has no public hook to
+     * reuse parsed classes.
+     */
+    public static void compareJarHistory(List<File> jars, List<String> versions) {
+        if (jars.size() != versions.size()) {
+            throw new IllegalArgumentException("Expected one version per jar, got " + jars.size() + " jars and " + versions.size() + " versions");
+        }
+        for (int i = 0; i < jars.size() - 1; i++) {
+            System.out.println("Comparing: " + versions.get(i) + " → " + versions.get(i + 1));
+            compareJarfiles(jars.get(i), versions.get(i), jars.get(i + 1), versions.get(i + 1));
+        }
+    }
 
-        for (JApiClass c : jApiClasses){
+    /** Class index of a jar, cached by path, size and modification time; a rewritten jar is read again. */
+    public static JarMetadata loadMetadata(File jar) throws IOException {
+        Path path = jar.toPath().toAbsolutePath().normalize();
+        String key = path + "|" + Files.size(path) + "|" + Files.getLastModifiedTime(path).toMillis();
+        JarMetadata cached = METADATA_CACHE.get(key);
+        if (cached != null) return cached;
 
-                System.out.println(c);
+        Map<String, String> classHashes = new TreeMap<>();
+        Map<String, String> classSources = new TreeMap<>();
+        try (ZipFile zip = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || !name.endsWith(".class") || name.startsWith("META-INF/")) continue;
+                byte[] bytes;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    bytes = in.readAllBytes();
+                }
+                String internalName = name.substring(0, name.length() - ".class".length());
+                String className = internalName.replace('/', '.');
+                classHashes.put(className, Helpers.sha1(bytes));
+                classSources.put(className, sourceFileOf(internalName, bytes));
             }
+        }
+        JarMetadata meta = new JarMetadata(Collections.unmodifiableMap(classHashes), Collections.unmodifiableMap(classSources));
+        METADATA_CACHE.put(key, meta);
+        return meta;
+    }
+
+    /**
+     * Source files (package path + file name, e.g. "org/apache/log4j/Logger.java") whose compiled
+     * classes are all byte-identical between the two jars. A source file counts only if it yields
+     * the same set of classes in both jars, so secondary top-level and nested types are covered too.
+     * <p>
+     * japicmp's UNCHANGED status is not used here: it compares signatures only, so a method-body
+     * edit would be reported as unchanged and its source diff silently dropped.
+     */
+    public static Set<String> unchangedSourceFiles(File before, File after) throws IOException {
+        Map<String, Map<String, String>> beforeBySource = classesBySource(loadMetadata(before));
+        Map<String, Map<String, String>> afterBySource = classesBySource(loadMetadata(after));
+
+        Set<String> unchanged = new TreeSet<>();
+        for (Map.Entry<String, Map<String, String>> e : beforeBySource.entrySet()) {
+            if (e.getValue().equals(afterBySource.get(e.getKey()))) {
+                unchanged.add(e.getKey());
+            }
+        }
+        return unchanged;
+    }
 
+    private static Map<String, Map<String, String>> classesBySource(JarMetadata meta) {
+        Map<String, Map<String, String>> bySource = new HashMap<>();
+        for (Map.Entry<String, String> e : meta.classHashes().entrySet()) {
+            String source = meta.classSources().get(e.getKey());
+            bySource.computeIfAbsent(source, k -> new HashMap<>()).put(e.getKey(), e.getValue());
+        }
+        return bySource;
+    }
 
+    /** Source file recorded in the class' SourceFile attribute; falls back to the outermost class name. */
+    private static String sourceFileOf(String internalName, byte[] bytes) {
+        int slash = internalName.lastIndexOf('/');
+        String pkgPath = slash < 0 ? "" : internalName.substring(0, slash + 1);
+        String sourceFile = null;
+        try {
+            sourceFile = new ClassFile(new DataInputStream(new java.io.ByteArrayInputStream(bytes))).getSourceFile();
+        } catch (IOException | RuntimeException ignored) {
+            // malformed or unusual class file; use the naming convention below
+        }
+        if (sourceFile == null) {
+            String simple = internalName.substring(slash + 1);
+            int dollar = simple.indexOf('$');
+            sourceFile = (dollar > 0 ? simple.substring(0, dollar) : simple) + ".java";
+        }
+        return pkgPath + sourceFile;
     }
 
 
@@ -0,0 +1,375 @@
+package org.example;
+
+import com.github.gumtreediff.tree.Tree;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end benchmark over fixed scenarios (toy projects, log4j release archives and jars under
+ * src/data, plus generated {@link SyntheticWorkload} projects). Each scenario runs a few warmup iterations, then measured ones; the results file records
+ * wall time, files/s, nodes/s, peak RSS, peak heap and report size per scenario. Given a baseline
+ * results file, scenarios that got slower, bigger or hungrier than the threshold are flagged.
+ * Scenarios whose inputs are missing are recorded as skipped.
+ */
+public class MacroBenchmark {
+
+    /** Input size of a scenario: source files (or classes) and AST nodes it processes per iteration. */
+    static final class Workload {
+        final long files;
+        final long nodes;
+
+        Workload(long files, long nodes) {
+            this.files = files;
+            this.nodes = nodes;
+        }
+    }
+
+    interface Task {
+        /** Run once, writing into workDir; returns the report size in bytes. */
+        long run(Path workDir) throws Exception;
+    }
+
+    interface WorkloadProbe {
+        /** Called after warmup, so inputs produced by the task itself (extracted archives) exist. */
+        Workload measure(Path workDir) throws IOException;
+    }
+
+    interface Setup {
+        /** Prepare generated inputs in workDir; runs once per scenario, outside all timings. */
+        void prepare(Path workDir) throws IOException;
+    }
+
+    /** One fixed benchmark case; inputs must all exist or the scenario is skipped. */
+    static final class Scenario {
+        final String name;
+        final List<Path> inputs;
+        final Setup setup;
+        final Task task;
+        final WorkloadProbe workload;
+
+        Scenario(String name, List<Path> inputs, Task task, WorkloadProbe workload) {
+            this(name, inputs, null, task, workload);
+        }
+
+        Scenario(String name, List<Path> inputs, Setup setup, Task task, WorkloadProbe workload) {
+            this.name = name;
+            this.inputs = inputs;
+            this.setup = setup;
+            this.task = task;
+            this.workload = workload;
+        }
+    }
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final Set<String> CODE_EXTENSIONS = new HashSet<>(Arrays.asList(".java", ".kt"));
+
+    private final List<Scenario> scenarios = new ArrayList<>();
+    private int warmup = 2;
+    private int iterations = 5;
+    private double threshold = 0.10;
+
+    public MacroBenchmark warmup(int warmup) {
+        this.warmup = warmup;
+        return this;
+    }
+
+    public MacroBenchmark iterations(int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    /** Relative slowdown/growth (0.10 = 10%) above which a scenario counts as a regression. */
+    public MacroBenchmark threshold(double threshold) {
+        this.threshold = threshold;
+        return this;
+    }
+
+    public MacroBenchmark add(Scenario scenario) {
+        scenarios.add(scenario);
+        return this;
+    }
+
+    /** Keep only the named scenarios. */
+    public MacroBenchmark only(Set<String> names) {
+        scenarios.removeIf(s -> !names.contains(s.name));
+        return this;
+    }
+
+    /** The standard scenarios over the sample data under {@code dataDir} (normally src/data). */
+    public static MacroBenchmark standard(Path dataDir) {
+        Path toy1 = dataDir.resolve("toys/toy1");
+        Path toy2 = dataDir.resolve("toys/toy2");
+        Path log4jReleases = dataDir.resolve("JavaLibraries/logging-log4j2_releases");
+        Path jarBefore = dataDir.resolve("jars/log4j-1.2.16.jar");
+        Path jarAfter = dataDir.resolve("jars/log4j-1.2.17.jar");
+
+        MacroBenchmark bench = new MacroBenchmark();
+        bench.add(projectDiff("diff-toys", toy1, toy2, new DiffOptions()));
+        bench.add(projectDiff("diff-toys-stats", toy1, toy2,
+                new DiffOptions().reportMode(DiffOptions.ReportMode.STATS_ONLY)));
+        bench.add(projectDiff("diff-toys-declarations", toy1, toy2,
+                new DiffOptions().granularity(DiffOptions.Granularity.DECLARATION)));
+        bench.add(new Scenario("trees-toys", List.of(toy1, toy2), work -> {
+            Path out = work.resolve("trees.json");
+            Helpers.exportProjectSourceTrees(toy1.toString(), toy2.toString(), out.toString(), "java");
+            return Files.size(out);
+        }, work -> sourceWorkload(toy1, toy2)));
+        bench.add(new Scenario("archives-log4j2", List.of(log4jReleases), work -> {
+            // without resume, so every iteration extracts and diffs instead of replaying the journal
+            Path reports = work.resolve("reports");
+            GumTreeExtractor.compareArchivesInRoot(log4jReleases.toString(), work.resolve("extracted").toString(),
+                    reports.toString(), DiffOptions.forLanguage("java").resume(false));
+            return directoryBytes(reports);
+        }, work -> sourceWorkload(subdirectories(work.resolve("extracted")))));
+        bench.add(new Scenario("jars-log4j", List.of(jarBefore, jarAfter), work -> {
+            // compareJarfiles prints every class; the printed bytes are its report
+            JarComparator.compareJarfiles(jarBefore.toFile(), "1.2.16", jarAfter.toFile(), "1.2.17");
+            return -1;
+        }, work -> new Workload(
+                JarComparator.loadMetadata(jarBefore.toFile()).classHashes().size()
+                        + JarComparator.loadMetadata(jarAfter.toFile()).classHashes().size(), 0)));
+
+        // generated inputs: always available, sized to show scaling rather than realism
+        bench.add(new SyntheticWorkload().files(100).nodesPerFile(200).diffScenario("synthetic-scale"));
+        bench.add(new SyntheticWorkload().files(4).nodesPerFile(100).depth(500).formattingRatio(0).editDensity(0.3).diffScenario("synthetic-deep"));
+        bench.add(new SyntheticWorkload().files(500).nodesPerFile(50).renameRatio(0.5).diffScenario("synthetic-renames"));
+        // formatting-only churn with the fingerprint skip and without it, so both paths have a baseline
+        bench.add(new SyntheticWorkload().files(200).nodesPerFile(300).editDensity(0).formattingRatio(0.8)
+                .diffScenario("synthetic-formatting", new DiffOptions().skipFormattingOnly(true)));
+        bench.add(new SyntheticWorkload().files(200).nodesPerFile(300).editDensity(0).formattingRatio(0.8)
+                .diffScenario("synthetic-formatting-parsed", new DiffOptions()));
+        bench.add(new SyntheticWorkload().files(100).nodesPerFile(2000).serializeScenario("synthetic-serialize", false));
+        bench.add(new SyntheticWorkload().files(100).nodesPerFile(2000).serializeScenario("synthetic-serialize-compact", true));
+        return bench;
+    }
+
+    /** Scenario diffing two project directories with the given options. */
+    static Scenario projectDiff(String name, Path before, Path after, DiffOptions options) {
+        return new Scenario(name, List.of(before, after), work -> {
+            Path out = work.resolve(name + ".json");
+            GumTreeExtractor.saveProjectDiffToJson(before.toString(), after.toString(), out.toString(), options);
+            return Files.size(out);
+        }, work -> sourceWorkload(before, after));
+    }
+
+    /**
+     * Run every scenario and write the results file. Returns the number of regressions against the
+     * baseline (0 without one).
+     */
+    public int run(Path resultsFile, Path baselineFile) throws IOException {
+        PrintStream console = System.out;
+        Path workRoot = Files.createTempDirectory("semanticDiff-bench");
+        List<Map<String, Object>> results = new ArrayList<>();
+        try {
+            for (Scenario s : scenarios) {
+                console.println("Scenario " + s.name + " ...");
+                Map<String, Object> r = runScenario(s, workRoot.resolve(s.name), console);
+                console.println("  " + r);
+                results.add(r);
+            }
+        } finally {
+            System.setOut(console);
+            Helpers.deleteRecursively(workRoot);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", new Date().toString());
+        report.put("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        report.put("cpus", Runtime.getRuntime().availableProcessors());
+        report.put("warmup", warmup);
+        report.put("iterations", iterations);
+        report.put("scenarios", results);
+
+        List<String> regressions = baselineFile == null ? List.of() : compare(results, baselineFile);
+        if (baselineFile != null) {
+            report.put("baseline", baselineFile.toString());
+            report.put("regressions", regressions);
+            if (regressions.isEmpty()) console.println("No regressions against " + baselineFile);
+            for (String r : regressions) console.println("REGRESSION " + r);
+        }
+
+        if (resultsFile.getParent() != null) Files.createDirectories(resultsFile.getParent());
+        Files.write(resultsFile, GSON.toJson(report).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        console.println("Benchmark results written to " + resultsFile);
+        return regressions.size();
+    }
+
+    private Map<String, Object> runScenario(Scenario s, Path work, PrintStream console) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("name", s.name);
+        for (Path in : s.inputs) {
+            if (!Files.exists(in)) {
+                r.put("status", "skipped");
+                r.put("reason", "missing input " + in);
+                return r;
+            }
+        }
+
+        CountingOutputStream printed = new CountingOutputStream();
+        try {
+            Files.createDirectories(work);
+            if (s.setup != null) s.setup.prepare(work);
+            // the scenarios print progress; keep it off the console and out of the timings
+            System.setOut(new PrintStream(printed, false, StandardCharsets.UTF_8));
+            for (int i = 0; i < warmup; i++) s.task.run(work);
+
+            Workload load = s.workload.measure(work);
+            long[] ms = new long[iterations];
+            long reportBytes = 0;
+            resetPeaks();
+            for (int i = 0; i < iterations; i++) {
+                System.gc();
+                printed.count = 0;
+                long t0 = System.nanoTime();
+                long size = s.task.run(work);
+                ms[i] = Helpers.msSince(t0);
+                reportBytes = size >= 0 ? size : printed.count;
+            }
+            Arrays.sort(ms);
+            long median = ms[ms.length / 2];
+
+            r.put("status", "ok");
+            r.put("files", load.files);
+            r.put("nodes", load.nodes);
+            r.put("medianMs", median);
+            r.put("minMs", ms[0]);
+            r.put("maxMs", ms[ms.length - 1]);
+            r.put("filesPerSec", perSecond(load.files, median));
+            r.put("nodesPerSec", perSecond(load.nodes, median));
+            r.put("peakRssBytes", peakRssBytes());
+            r.put("peakHeapBytes", peakHeapBytes());
+            r.put("reportBytes", reportBytes);
+        } catch (Exception | StackOverflowError e) {
+            // a StackOverflowError on deep inputs is a result worth recording, not a crash
+            r.put("status", "error");
+            r.put("reason", e.getClass().getSimpleName() + ": " + e.getMessage());
+        } finally {
+            System.setOut(console);
+        }
+        return r;
+    }
+
+    /** Scenarios present in both runs; lower is better for every compared metric. */
+    private List<String> compare(List<Map<String, Object>> results, Path baselineFile) throws IOException {
+        JsonObject baseline = JsonParser.parseString(Files.readString(baselineFile)).getAsJsonObject();
+        Map<String, JsonObject> byName = new HashMap<>();
+        for (JsonElement e : baseline.getAsJsonArray("scenarios")) {
+            JsonObject o = e.getAsJsonObject();
+            byName.put(o.get("name").getAsString(), o);
+        }
+
+        List<String> regressions = new ArrayList<>();
+        for (Map<String, Object> r : results) {
+            JsonObject base = byName.get((String) r.get("name"));
+            if (base == null || !"ok".equals(r.get("status")) || !"ok".equals(base.get("status").getAsString())) continue;
+            for (String metric : new String[]{"medianMs", "peakHeapBytes", "peakRssBytes", "reportBytes"}) {
+                if (!base.has(metric) || !(r.get(metric) instanceof Number)) continue;
+                double before = base.get(metric).getAsDouble();
+                double now = ((Number) r.get(metric)).doubleValue();
+                if (before > 0 && now > before * (1 + threshold)) {
+                    regressions.add(String.format(Locale.ROOT, "%s %s: %.0f -> %.0f (+%.1f%%)",
+                            r.get("name"), metric, before, now, 100 * (now / before - 1)));
+                }
+            }
+        }
+        return regressions;
+    }
+
+    // ===== Workload and memory probes =====
+
+    static Workload sourceWorkload(Path... roots) throws IOException {
+        long files = 0;
+        long nodes = 0;
+        for (Path root : roots) {
+            for (Path file : Helpers.listCodeFiles(root, CODE_EXTENSIONS).values()) {
+                files++;
+                try {
+                    Tree t = GeneratorDispatcher.parse(file, "java");
+                    nodes += t.getMetrics().size;
+                } catch (IOException | RuntimeException e) {
+                    // unparseable files still count as files
+                }
+            }
+        }
+        return new Workload(files, nodes);
+    }
+
+    private static Path[] subdirectories(Path dir) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(Files::isDirectory).sorted().toArray(Path[]::new);
+        }
+    }
+
+    private static long directoryBytes(Path dir) throws IOException {
+        long total = 0;
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) s::iterator) total += Files.size(p);
+        }
+        return total;
+    }
+
+    private static double perSecond(long count, long ms) {
+        return ms == 0 ? 0 : Math.round(count * 1000.0 / ms * 10) / 10.0;
+    }
+
+    /** Reset the heap pool peaks and, where the kernel allows it, the process peak RSS (VmHWM). */
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+        try {
+            Files.writeString(Paths.get("/proc/self/clear_refs"), "5");
+        } catch (IOException | UnsupportedOperationException e) {
+            // not Linux or not permitted: the RSS peak then covers the whole process lifetime
+        }
+    }
+
+    private static long peakHeapBytes() {
+        long sum = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) sum += pool.getPeakUsage().getUsed();
+        }
+        return sum;
+    }
+
+    /** VmHWM from /proc/self/status, -1 where it is not available. */
+    private static long peakRssBytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // fall through
+        }
+        return -1;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -1,60 +1,256 @@
 package org.example;
 import java.io.File;
 import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.*;
 
-import static org.example.GumTreeExtractor.saveProjectDiffToJson;
-import static org.example.Helpers.extractJdkSqlSources;
+import static org.example.GumTreeExtractor.compareArchivesInRoot;
+import static org.example.Helpers.exportProjectSourceTrees;
 import static org.example.JarComparator.compareJarfiles;
 
-//TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
-// click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
+/**
+ * Command line entry point.
+ * <pre>
+ *   diff        &lt;oldDir&gt; &lt;newDir&gt; &lt;out.json[.gz]&gt; [--lang java] [--mode full|stats] [--granularity file|declaration] [--before-jar a.jar --after-jar b.jar] [--compress gz] [--fingerprint on|off] [--moves on|off] [--exclude glob,...] [--cache-dir dir] [--cache-mb 64] [--threads N] [--shards N [--shard-heap 2g]]
+ *   archives    &lt;archiveFolder&gt; &lt;extractDir&gt; [--lang java] [--compress gz] [--resume on|off] [--moves on|off] [--extract sources|all] [--include glob,...] [--exclude glob,...] [--cache-dir dir] [--cache-mb 64] [--threads N]
+ *   jars        &lt;before.jar&gt; &lt;beforeVersion&gt; &lt;after.jar&gt; &lt;afterVersion&gt;
+ *   jar-history &lt;v1.jar&gt; &lt;v2.jar&gt; ...
+ *   trees       &lt;oldDir&gt; &lt;newDir&gt; &lt;out.json&gt; [--lang java]
+ *   daemon      [--port 7878] [--workers N] [--queue N]
+ *   index       &lt;indexDir&gt; &lt;report.json&gt; ...
+ *   query       &lt;indexDir&gt; &lt;term&gt; ...
+ *   bench       &lt;results.json&gt; [--data src/data] [--baseline baseline.json] [--warmup 2] [--iterations 5] [--threshold 0.10] [--only a,b]
+ *   synth       &lt;outDir&gt; [--files 100] [--nodes 500] [--depth 0] [--edits 0.1] [--renames 0.05] [--formatting 0.1] [--seed 42]
+ *   jdk-sources &lt;outDir&gt; &lt;jdkRoot&gt; ... [--packages java/sql/,javax/sql/,jdk/sql/] [--threads N]
+ * </pre>
+ * Exit status: 0 on success, 1 on failure (or benchmark regressions), 2 on bad usage.
+ */
 public class Main {
-    public static void main(String[] args) {
-
 
+    private static final String USAGE = String.join("\n",
+            "Usage: semanticDiff <command> [args]",
+            "  diff        <oldDir> <newDir> <out.json[.gz]> [--lang java] [--mode full|stats] [--granularity file|declaration] [--before-jar a.jar --after-jar b.jar] [--compress gz] [--fingerprint on|off] [--moves on|off] [--exclude glob,...] [--cache-dir dir] [--cache-mb 64] [--threads N] [--shards N [--shard-heap 2g]]",
+            "  archives    <archiveFolder> <extractDir> [--lang java] [--compress gz] [--resume on|off] [--moves on|off] [--extract sources|all] [--include glob,...] [--exclude glob,...] [--cache-dir dir] [--cache-mb 64] [--threads N]",
+            "  jars        <before.jar> <beforeVersion> <after.jar> <afterVersion>",
+            "  jar-history <v1.jar> <v2.jar> ...",
+            "  trees       <oldDir> <newDir> <out.json> [--lang java]",
+            "  daemon      [--port 7878] [--workers N] [--queue N]",
+            "  index       <indexDir> <report.json> ...",
+            "  query       <indexDir> <term> ...   (e.g. class:Logger status:modified, actionnode:Move/MethodDeclaration)",
+            "  bench       <results.json> [--data src/data] [--baseline baseline.json] [--warmup 2] [--iterations 5] [--threshold 0.10] [--only a,b]",
+            "  synth       <outDir> [--files 100] [--nodes 500] [--depth 0] [--edits 0.1] [--renames 0.05] [--formatting 0.1] [--seed 42]",
+            "  jdk-sources <outDir> <jdkRoot> ... [--packages java/sql/,javax/sql/,jdk/sql/] [--threads N]",
+            "Reports ending in .gz, .bz2, .lz4, .sz or .deflate are compressed; --compress appends that extension.");
 
+    public static void main(String[] args) {
+        if (args.length == 0 || "-h".equals(args[0]) || "--help".equals(args[0])) {
+            System.out.println(USAGE);
+            System.exit(args.length == 0 ? 2 : 0);
+        }
 
-/*
-        String rootArchiveFolder = "src/data/JavaLibraries/logging-log4j2_releases";
-        String extractBaseDir = "build/extracted/logging-log4j2_releases"; // where each zip will be unpacked
-        String language = "java"; //
+        List<String> positional = new ArrayList<>();
+        Map<String, String> flags = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                if (i + 1 >= args.length) usage("Missing value for " + args[i]);
+                flags.put(args[i].substring(2), args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
 
         try {
-            compareArchivesInRoot(rootArchiveFolder, extractBaseDir, language);
-            System.out.println("Pairwise comparisons completed.");
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }*/
-
-
-      //diffProjects();
-
-        File before = new File("src/data/jars/log4j-1.2.16.jar");
-        File after = new File("src/data/jars/log4j-1.2.17.jar");
-        String beforeV = "1.2.16";
-        String afterV = "1.2.17";
-        compareJarfiles(before,beforeV,after,afterV);
-
+            run(args[0], positional, flags);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
 
+    private static void run(String command, List<String> pos, Map<String, String> flags) throws IOException {
+        String language = flags.getOrDefault("lang", "java");
+        switch (command) {
+            case "diff": {
+                expectArgs(command, pos, 3);
+                DiffOptions options = DiffOptions.forLanguage(language)
+                        .reportMode(reportMode(flags))
+                        .granularity(granularity(flags))
+                        .outputCompression(flags.get("compress"))
+                        .skipFormattingOnly(onOff(flags, "fingerprint", false))
+                        .detectMoves(onOff(flags, "moves", false))
+                        .diffThreads(Integer.parseInt(flags.getOrDefault("threads", "0")));
+                if (flags.containsKey("exclude")) options.scanExcludes(Arrays.asList(flags.get("exclude").split(",")));
+                options.editScriptCache(editScriptCache(flags));
+                if (flags.containsKey("before-jar") != flags.containsKey("after-jar")) {
+                    throw new IllegalArgumentException("--before-jar and --after-jar must be given together");
+                }
+                if (flags.containsKey("before-jar")) {
+                    options.releaseJars(new File(flags.get("before-jar")), new File(flags.get("after-jar")));
+                }
+                String out = pos.get(2);
+                if (!out.endsWith(options.outputCompression())) out += options.outputCompression();
+                int shards = Integer.parseInt(flags.getOrDefault("shards", "1"));
+                ShardedDiff.saveProjectDiffToJson(pos.get(0), pos.get(1), out, options, shards, flags.get("shard-heap"));
+                System.out.println("Project diff JSON written to " + out);
+                break;
+            }
+            case "archives":
+                expectArgs(command, pos, 2);
+                compareArchivesInRoot(pos.get(0), pos.get(1),
+                        DiffOptions.forLanguage(language).outputCompression(flags.get("compress"))
+                                .resume(onOff(flags, "resume", true))
+                                .detectMoves(onOff(flags, "moves", false))
+                                .diffThreads(Integer.parseInt(flags.getOrDefault("threads", "0")))
+                                .extractFilter(extractFilter(flags))
+                                .editScriptCache(editScriptCache(flags)));
+                System.out.println("Pairwise comparisons completed.");
+                break;
+            case "jars":
+                expectArgs(command, pos, 4);
+                compareJarfiles(new File(pos.get(0)), pos.get(1), new File(pos.get(2)), pos.get(3));
+                break;
+            case "jar-history": {
+                if (pos.size() < 2) throw new IllegalArgumentException("jar-history needs at least two jars");
+                List<File> jars = new ArrayList<>();
+                List<String> versions = new ArrayList<>();
+                for (String p : pos) {
+                    File jar = new File(p);
+                    jars.add(jar);
+                    versions.add(jar.getName().replaceFirst("(?i)\\.jar$", ""));
+                }
+                JarComparator.compareJarHistory(jars, versions);
+                break;
+            }
+            case "trees":
+                expectArgs(command, pos, 3);
+                exportProjectSourceTrees(pos.get(0), pos.get(1), pos.get(2), language);
+                break;
+            case "daemon": {
+                int workers = Integer.parseInt(flags.getOrDefault("workers",
+                        String.valueOf(Runtime.getRuntime().availableProcessors())));
+                int port = Integer.parseInt(flags.getOrDefault("port", String.valueOf(DiffDaemon.DEFAULT_PORT)));
+                int queue = Integer.parseInt(flags.getOrDefault("queue", String.valueOf(4 * workers)));
+                DiffDaemon daemon = DiffDaemon.start(port, workers, queue);
+                Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop));
+                break;
+            }
+            case "index": {
+                if (pos.size() < 2) throw new IllegalArgumentException("index needs an index dir and at least one report");
+                List<Path> reports = new ArrayList<>();
+                for (String p : pos.subList(1, pos.size())) reports.add(Paths.get(p));
+                ReportIndex.build(reports, Paths.get(pos.get(0)));
+                System.out.println("Indexed " + reports.size() + " reports into " + pos.get(0));
+                break;
+            }
+            case "query": {
+                if (pos.size() < 2) throw new IllegalArgumentException("query needs an index dir and at least one term");
+                try (ReportIndex index = ReportIndex.open(Paths.get(pos.get(0)))) {
+                    for (ReportIndex.Hit hit : index.query(pos.subList(1, pos.size()).toArray(new String[0]))) {
+                        System.out.println(hit);
+                    }
+                }
+                break;
+            }
+            case "bench": {
+                expectArgs(command, pos, 1);
+                MacroBenchmark bench = MacroBenchmark.standard(Paths.get(flags.getOrDefault("data", "src/data")))
+                        .warmup(Integer.parseInt(flags.getOrDefault("warmup", "2")))
+                        .iterations(Integer.parseInt(flags.getOrDefault("iterations", "5")))
+                        .threshold(Double.parseDouble(flags.getOrDefault("threshold", "0.10")));
+                if (flags.containsKey("only")) bench.only(new HashSet<>(Arrays.asList(flags.get("only").split(","))));
+                String baseline = flags.get("baseline");
+                int regressions = bench.run(Paths.get(pos.get(0)), baseline == null ? null : Paths.get(baseline));
+                if (regressions > 0) System.exit(1);
+                break;
+            }
+            case "synth":
+                expectArgs(command, pos, 1);
+                new SyntheticWorkload()
+                        .files(Integer.parseInt(flags.getOrDefault("files", "100")))
+                        .nodesPerFile(Integer.parseInt(flags.getOrDefault("nodes", "500")))
+                        .depth(Integer.parseInt(flags.getOrDefault("depth", "0")))
+                        .editDensity(Double.parseDouble(flags.getOrDefault("edits", "0.1")))
+                        .renameRatio(Double.parseDouble(flags.getOrDefault("renames", "0.05")))
+                        .formattingRatio(Double.parseDouble(flags.getOrDefault("formatting", "0.1")))
+                        .seed(Long.parseLong(flags.getOrDefault("seed", "42")))
+                        .generate(Paths.get(pos.get(0)));
+                System.out.println("Synthetic before/after projects written to " + pos.get(0));
+                break;
+            case "jdk-sources": {
+                if (pos.size() < 2) throw new IllegalArgumentException("jdk-sources needs an output dir and at least one JDK root");
+                List<String> packages = flags.containsKey("packages")
+                        ? Arrays.asList(flags.get("packages").split(",")) : Helpers.JDK_SQL_PACKAGES;
+                List<Path> roots = new ArrayList<>();
+                for (String p : pos.subList(1, pos.size())) roots.add(Paths.get(p));
+                int threads = Integer.parseInt(flags.getOrDefault("threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors())));
+                Helpers.extractJdkSources(roots, Paths.get(pos.get(0)), packages, threads);
+                System.out.println("JDK sources of " + roots.size() + " installs written under " + pos.get(0));
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
 
+    private static DiffOptions.ReportMode reportMode(Map<String, String> flags) {
+        switch (flags.getOrDefault("mode", "full")) {
+            case "full": return DiffOptions.ReportMode.FULL;
+            case "stats": return DiffOptions.ReportMode.STATS_ONLY;
+            default: throw new IllegalArgumentException("Unknown --mode: " + flags.get("mode"));
+        }
+    }
 
+    private static DiffOptions.Granularity granularity(Map<String, String> flags) {
+        switch (flags.getOrDefault("granularity", "file")) {
+            case "file": return DiffOptions.Granularity.FILE;
+            case "declaration": return DiffOptions.Granularity.DECLARATION;
+            default: throw new IllegalArgumentException("Unknown --granularity: " + flags.get("granularity"));
+        }
     }
 
+    /** A cache when --cache-dir or --cache-mb is given, else null. */
+    private static EditScriptCache editScriptCache(Map<String, String> flags) {
+        if (!flags.containsKey("cache-dir") && !flags.containsKey("cache-mb")) return null;
+        long mb = Long.parseLong(flags.getOrDefault("cache-mb", "64"));
+        String dir = flags.get("cache-dir");
+        return new EditScriptCache(mb * 1024 * 1024, dir == null ? null : Paths.get(dir));
+    }
 
-    public static void diffProjects(){
-        String srcPath = "src/data/toys/toy1";
-        String dstPath = "src/data/toys/toy2";
+    private static ExtractFilter extractFilter(Map<String, String> flags) {
+        ExtractFilter filter;
+        switch (flags.getOrDefault("extract", "sources")) {
+            case "sources": filter = ExtractFilter.sources(); break;
+            case "all": filter = ExtractFilter.all(); break;
+            default: throw new IllegalArgumentException("Unknown --extract: " + flags.get("extract"));
+        }
+        if (flags.containsKey("include")) filter = filter.include(Arrays.asList(flags.get("include").split(",")));
+        if (flags.containsKey("exclude")) filter = filter.exclude(Arrays.asList(flags.get("exclude").split(",")));
+        return filter;
+    }
 
+    private static boolean onOff(Map<String, String> flags, String name, boolean defaultValue) {
+        String v = flags.get(name);
+        if (v == null) return defaultValue;
+        switch (v) {
+            case "on": return true;
+            case "off": return false;
+            default: throw new IllegalArgumentException("Expected on or off for --" + name + ": " + v);
+        }
+    }
 
-        try {
-            saveProjectDiffToJson(srcPath, dstPath, "results/tutorial/diff_example.json", "java");
-            System.out.println("Project diff JSON written to results/diff.json");
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+    private static void expectArgs(String command, List<String> pos, int n) {
+        if (pos.size() != n) {
+            throw new IllegalArgumentException(command + " expects " + n + " arguments, got " + pos.size());
         }
+    }
 
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
     }
 }
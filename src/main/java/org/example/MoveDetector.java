@@ -0,0 +1,431 @@
+package org.example;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Cross-file moves: subtrees one file lost (TreeDelete actions, removed declarations, the types and
+ * members of a deleted file) that show up again in another file (TreeInsert actions, added
+ * declarations, those of an added file). Each per-file edit script only sees its half of such a
+ * move, as an unrelated delete and insert.
+ * <p>
+ * Candidates are indexed by their serialized tree, so identical subtrees pair with one hash lookup
+ * each. The rest get MinHash signatures over their (parent, node) shingles, banded into
+ * locality-sensitive buckets: only subtrees sharing a bucket are compared (exact Jaccard similarity),
+ * so the work stays near-linear in the number of changed subtrees instead of all pairs. Pairing is
+ * greedy, most similar first, and never within one entry. A pair nested in a larger pair between the
+ * same two entries (a method of a class that moved whole) is not listed on its own.
+ * <p>
+ * Works on the report model, so entries replayed from the cache, a checkpoint or a report file take
+ * part like fresh ones. Stats-only entries carry no trees and contribute nothing.
+ */
+public class MoveDetector {
+
+    /** Smaller subtrees (a name, a literal, a one-token statement) recur everywhere by chance. */
+    public static final int DEFAULT_MIN_NODES = 8;
+    public static final double DEFAULT_MIN_SIMILARITY = 0.8;
+
+    private static final int HASHES = 32;
+    private static final int ROWS = 4;
+    private static final int BANDS = HASHES / ROWS;
+    /** Buckets this full hold near-duplicates of something common; comparing inside them would go quadratic. */
+    private static final int MAX_BUCKET = 64;
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        for (int k = 0; k < HASHES; k++) SEEDS[k] = mix(0x9E3779B97F4A7C15L * (k + 1));
+    }
+
+    /** One detected move, from the old version's file to the new version's. */
+    public static final class Move {
+        final String kind;
+        final String nodeType;
+        final String name;
+        final String fromPath;
+        final String toPath;
+        final int nodes;
+        final double similarity;
+        final int order;
+
+        Move(String kind, String nodeType, String name, String fromPath, String toPath, int nodes,
+             double similarity, int order) {
+            this.kind = kind;
+            this.nodeType = nodeType;
+            this.name = name;
+            this.fromPath = fromPath;
+            this.toPath = toPath;
+            this.nodes = nodes;
+            this.similarity = similarity;
+            this.order = order;
+        }
+
+        /** "identical" or "similar". */
+        public String kind() {
+            return kind;
+        }
+
+        /** Root node type of the moved subtree, e.g. MethodDeclaration. */
+        public String nodeType() {
+            return nodeType;
+        }
+
+        /** Declared name (the root's SimpleName child), or null. */
+        public String name() {
+            return name;
+        }
+
+        public String fromPath() {
+            return fromPath;
+        }
+
+        public String toPath() {
+            return toPath;
+        }
+
+        /** Size of the subtree in its new place. */
+        public int nodes() {
+            return nodes;
+        }
+
+        /** Jaccard similarity of the two subtrees' shingles, 1.0 for identical ones. */
+        public double similarity() {
+            return similarity;
+        }
+
+        static final TypeAdapter<Move> ADAPTER = new TypeAdapter<Move>() {
+            @Override
+            public void write(JsonWriter out, Move m) throws IOException {
+                out.beginObject();
+                out.name("kind").value(m.kind);
+                out.name("nodeType").value(m.nodeType);
+                if (m.name != null) out.name("name").value(m.name);
+                out.name("fromPath").value(m.fromPath);
+                out.name("toPath").value(m.toPath);
+                out.name("nodes").value(m.nodes);
+                out.name("similarity").value(m.similarity);
+                out.endObject();
+            }
+
+            @Override
+            public Move read(JsonReader in) throws IOException {
+                String kind = null, nodeType = null, name = null, fromPath = null, toPath = null;
+                int nodes = 0;
+                double similarity = 0;
+                in.beginObject();
+                while (in.hasNext()) {
+                    String field = in.nextName();
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        continue;
+                    }
+                    switch (field) {
+                        case "kind": kind = in.nextString(); break;
+                        case "nodeType": nodeType = in.nextString(); break;
+                        case "name": name = in.nextString(); break;
+                        case "fromPath": fromPath = in.nextString(); break;
+                        case "toPath": toPath = in.nextString(); break;
+                        case "nodes": nodes = in.nextInt(); break;
+                        case "similarity": similarity = in.nextDouble(); break;
+                        default: in.skipValue();
+                    }
+                }
+                in.endObject();
+                return new Move(kind, nodeType, name, fromPath, toPath, nodes, similarity, 0);
+            }
+        };
+    }
+
+    /** A removed or inserted subtree of one entry. */
+    private static final class Candidate {
+        final int index;
+        final int entry;
+        final String path;
+        final String tree;
+        final Shape shape;
+        long[] shingles;
+        long[] signature;
+
+        Candidate(int index, int entry, String path, String tree, Shape shape) {
+            this.index = index;
+            this.entry = entry;
+            this.path = path;
+            this.tree = tree;
+            this.shape = shape;
+        }
+
+        void sketch() {
+            shingles = parse(tree, true).shingles;
+            signature = new long[HASHES];
+            Arrays.fill(signature, Long.MAX_VALUE);
+            for (long s : shingles) {
+                for (int k = 0; k < HASHES; k++) {
+                    long h = mix(s ^ SEEDS[k]);
+                    if (h < signature[k]) signature[k] = h;
+                }
+            }
+        }
+
+        long bandKey(int band) {
+            long h = shape.rootType.hashCode() * 31L + band;
+            for (int r = band * ROWS; r < (band + 1) * ROWS; r++) h = mix(h ^ signature[r]);
+            return h;
+        }
+    }
+
+    /** A candidate pair that cleared the similarity bar. */
+    private static final class Scored {
+        final double similarity;
+        final Candidate removed;
+        final Candidate inserted;
+
+        Scored(double similarity, Candidate removed, Candidate inserted) {
+            this.similarity = similarity;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+    }
+
+    /** What a Lisp tree string says about its subtree. */
+    private static final class Shape {
+        String rootType;
+        String name;
+        int nodes;
+        long[] shingles;
+    }
+
+    private final int minNodes;
+    private final double minSimilarity;
+    private final List<Candidate> removed = new ArrayList<>();
+    private final List<Candidate> inserted = new ArrayList<>();
+    private int entries;
+
+    public MoveDetector() {
+        this(DEFAULT_MIN_NODES, DEFAULT_MIN_SIMILARITY);
+    }
+
+    public MoveDetector(int minNodes, double minSimilarity) {
+        this.minNodes = minNodes;
+        this.minSimilarity = minSimilarity;
+    }
+
+    /** Collect the removed and inserted subtrees of one entry; entries are added in report order. */
+    public void add(FileEntry e) {
+        int entry = entries++;
+        String from = e.oldPath() != null ? e.oldPath() : e.path();
+        String to = e.newPath() != null ? e.newPath() : e.path();
+        if (e.actions() != null) addActions(e.actions(), entry, from, to);
+        if (e.declarations() != null) {
+            for (DeclarationEntry d : e.declarations()) {
+                if (d.actions() != null) addActions(d.actions(), entry, from, to);
+                else if ("removed".equals(d.status())) candidate(removed, entry, from, d.nodeTree());
+                else if ("added".equals(d.status())) candidate(inserted, entry, to, d.nodeTree());
+            }
+        }
+    }
+
+    private void addActions(List<ActionEntry> actions, int entry, String from, String to) {
+        for (ActionEntry a : actions) {
+            if ("TreeDelete".equals(a.action())) candidate(removed, entry, from, a.nodeTree());
+            else if ("TreeInsert".equals(a.action())) candidate(inserted, entry, to, a.nodeTree());
+        }
+    }
+
+    private void candidate(List<Candidate> into, int entry, String path, String tree) {
+        if (tree == null || path == null) return;
+        Shape shape = parse(tree, false);
+        if (shape.nodes < minNodes) return;
+        into.add(new Candidate(into.size(), entry, path, tree, shape));
+    }
+
+    /** Pair the collected subtrees; moves are listed in the order their new places were reported. */
+    public List<Move> moves() {
+        List<Scored> paired = new ArrayList<>();
+        boolean[] removedUsed = new boolean[removed.size()];
+        boolean[] insertedUsed = new boolean[inserted.size()];
+
+        // 1) identical subtrees: one lookup per inserted subtree
+        Map<String, List<Candidate>> byTree = new HashMap<>();
+        for (Candidate r : removed) byTree.computeIfAbsent(r.tree, k -> new ArrayList<>()).add(r);
+        for (Candidate i : inserted) {
+            List<Candidate> same = byTree.get(i.tree);
+            if (same == null) continue;
+            for (Iterator<Candidate> it = same.iterator(); it.hasNext(); ) {
+                Candidate r = it.next();
+                if (r.entry == i.entry) continue;
+                it.remove();
+                removedUsed[r.index] = true;
+                insertedUsed[i.index] = true;
+                paired.add(new Scored(1.0, r, i));
+                break;
+            }
+        }
+
+        // 2) similar subtrees: bucket mates under banded MinHash signatures, scored by exact Jaccard
+        Map<Long, List<Candidate>> buckets = new HashMap<>();
+        for (Candidate r : removed) {
+            if (removedUsed[r.index]) continue;
+            r.sketch();
+            for (int b = 0; b < BANDS; b++) buckets.computeIfAbsent(r.bandKey(b), k -> new ArrayList<>()).add(r);
+        }
+        List<Scored> scored = new ArrayList<>();
+        if (!buckets.isEmpty()) {
+            for (Candidate i : inserted) {
+                if (insertedUsed[i.index]) continue;
+                i.sketch();
+                Set<Candidate> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (int b = 0; b < BANDS; b++) {
+                    List<Candidate> bucket = buckets.get(i.bandKey(b));
+                    if (bucket == null || bucket.size() > MAX_BUCKET) continue;
+                    for (Candidate r : bucket) {
+                        if (r.entry == i.entry || !seen.add(r)) continue;
+                        int small = Math.min(r.shingles.length, i.shingles.length);
+                        int large = Math.max(r.shingles.length, i.shingles.length);
+                        if (small < minSimilarity * large) continue; // Jaccard cannot reach the bar
+                        double similarity = jaccard(r.shingles, i.shingles);
+                        if (similarity >= minSimilarity) scored.add(new Scored(similarity, r, i));
+                    }
+                }
+                i.shingles = null; // only the signature is needed from here on
+            }
+        }
+        scored.sort(Comparator.comparingDouble((Scored c) -> -c.similarity)
+                .thenComparingInt(c -> c.inserted.index)
+                .thenComparingInt(c -> c.removed.index));
+        for (Scored c : scored) {
+            if (removedUsed[c.removed.index] || insertedUsed[c.inserted.index]) continue;
+            removedUsed[c.removed.index] = true;
+            insertedUsed[c.inserted.index] = true;
+            paired.add(c);
+        }
+
+        // 3) a type moved whole (say, out of a deleted file) carries its members: drop their own moves
+        Map<Long, List<Scored>> byEntries = new HashMap<>();
+        for (Scored p : paired) {
+            byEntries.computeIfAbsent(((long) p.removed.entry << 32) | p.inserted.entry, k -> new ArrayList<>()).add(p);
+        }
+        List<Move> moves = new ArrayList<>();
+        for (Scored p : paired) {
+            if (nestedInAnother(p, byEntries.get(((long) p.removed.entry << 32) | p.inserted.entry))) continue;
+            moves.add(p.removed.tree.equals(p.inserted.tree) ? move("identical", p.removed, p.inserted, 1.0)
+                    : move("similar", p.removed, p.inserted, Math.round(p.similarity * 1000) / 1000.0));
+        }
+        moves.sort(Comparator.comparingInt(m -> m.order));
+        return moves;
+    }
+
+    /** True if a larger pair between the same two entries contains both subtrees of this one. */
+    private static boolean nestedInAnother(Scored p, List<Scored> sameEntries) {
+        for (Scored o : sameEntries) {
+            if (o != p && o.removed.tree.length() > p.removed.tree.length()
+                    && o.removed.tree.contains(p.removed.tree) && o.inserted.tree.contains(p.inserted.tree)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Move move(String kind, Candidate from, Candidate to, double similarity) {
+        return new Move(kind, to.shape.rootType, to.shape.name, from.path, to.path, to.shape.nodes, similarity, to.index);
+    }
+
+    /** |A ∩ B| / |A ∪ B| of two sorted shingle sets. */
+    private static double jaccard(long[] a, long[] b) {
+        int i = 0, j = 0, common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) common / (a.length + b.length - common);
+    }
+
+    /**
+     * Scan a tree in {@link Serializers#toLisp} form: root type, the root's declared name, node count
+     * and optionally one shingle per node, hashing (parent type and label, own type and label). Repeated
+     * shingles are numbered so the set keeps multiplicities.
+     */
+    private static Shape parse(String lisp, boolean withShingles) {
+        Shape shape = new Shape();
+        long[] stack = new long[32];
+        long[] shingles = withShingles ? new long[16] : null;
+        int depth = 0;
+        int n = lisp.length();
+        int i = 0;
+        while (i < n) {
+            char c = lisp.charAt(i);
+            if (c == ')') {
+                depth--;
+                i++;
+                continue;
+            }
+            if (c != '(') {
+                i++;
+                continue;
+            }
+            int typeStart = ++i;
+            while (i < n && lisp.charAt(i) != ' ' && lisp.charAt(i) != ')') i++;
+            long token = hash(lisp, typeStart, i, 0xCBF29CE484222325L);
+            if (depth == 0 && shape.rootType == null) shape.rootType = lisp.substring(typeStart, i);
+            if (i + 1 < n && lisp.charAt(i) == ' ' && lisp.charAt(i + 1) == '"') {
+                int labelStart = i + 2;
+                i = labelStart;
+                while (i < n && lisp.charAt(i) != '"') i += lisp.charAt(i) == '\\' ? 2 : 1;
+                token = hash(lisp, labelStart, i, token * 31 + 1);
+                if (depth == 1 && shape.name == null && lisp.regionMatches(typeStart, "SimpleName ", 0, 11)) {
+                    shape.name = lisp.substring(labelStart, i).replace("\\\"", "\"").replace("\\\\", "\\");
+                }
+                i++;
+            }
+            if (withShingles) {
+                long parent = depth == 0 ? 0 : stack[depth - 1];
+                if (shape.nodes == shingles.length) shingles = Arrays.copyOf(shingles, shingles.length * 2);
+                shingles[shape.nodes] = mix(parent * 0x9E3779B97F4A7C15L + token);
+            }
+            if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+            stack[depth++] = token;
+            shape.nodes++;
+        }
+        if (withShingles) {
+            long[] set = Arrays.copyOf(shingles, shape.nodes);
+            Arrays.sort(set);
+            long previous = 0;
+            int run = 0;
+            for (int a = 0; a < set.length; a++) {
+                long v = set[a];
+                run = a > 0 && v == previous ? run + 1 : 0;
+                previous = v;
+                if (run > 0) set[a] = mix(v + run);
+            }
+            Arrays.sort(set);
+            shape.shingles = set;
+        }
+        return shape;
+    }
+
+    /** FNV-1a over a char range. */
+    private static long hash(String s, int from, int to, long h) {
+        for (int i = from; i < to; i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /** 64-bit finalizer (splitmix64). */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,162 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.example.Helpers.listCodeFiles;
+
+/**
+ * A project diff as a library result, for callers that want the entries rather than a report file.
+ * {@link #of} only lists both versions and pairs their files (same path, renames, added/deleted);
+ * each file is parsed and matched when iteration reaches it, and its action trees are serialized to
+ * Lisp only when asked for ({@link ActionEntry#nodeTree()}, {@link FileEntry#toJson()}) or when the
+ * whole report is written with {@link #writeTo(Path)}. Cross-file moves need every entry; feed the
+ * entries to a {@link MoveDetector}.
+ * <pre>
+ *   for (FileEntry e : ProjectDiff.of(oldDir, newDir, DiffOptions.forLanguage("java"))) {
+ *       if (e.actions() != null) e.actions().forEach(a -&gt; use(a.action(), a.node()));
+ *   }
+ * </pre>
+ * Every iteration diffs again; keep the entries that are needed. Once an iteration has returned every
+ * entry, {@link #summary()} has its skip and cache counts and, in stats-only mode, the project totals.
+ */
+public final class ProjectDiff implements Iterable<FileEntry> {
+
+    private final Path before;
+    private final Path after;
+    private final DiffOptions options;
+    private final List<GumTreeExtractor.FilePair> plan;
+    private volatile Summary summary;
+
+    private ProjectDiff(Path before, Path after, DiffOptions options, List<GumTreeExtractor.FilePair> plan) {
+        this.before = before;
+        this.after = after;
+        this.options = options;
+        this.plan = plan;
+    }
+
+    /** List and pair the code files of both versions; nothing is diffed yet. */
+    public static ProjectDiff of(Path oldProjectDir, Path newProjectDir, DiffOptions options) throws IOException {
+        Path oldRoot = oldProjectDir.toAbsolutePath().normalize();
+        Path newRoot = newProjectDir.toAbsolutePath().normalize();
+
+        Map<String, Path> oldFiles = listCodeFiles(oldRoot, GumTreeExtractor.CODE_EXTENSIONS, options.scanExcludes());
+        Map<String, Path> newFiles = listCodeFiles(newRoot, GumTreeExtractor.CODE_EXTENSIONS, options.scanExcludes());
+
+        // files at the same relative path in both versions come first, in path order
+        List<GumTreeExtractor.FilePair> plan = new ArrayList<>();
+        Set<Path> usedOld = new HashSet<>();
+        Set<Path> usedNew = new HashSet<>();
+        for (String rel : new TreeSet<>(oldFiles.keySet())) {
+            Path oldPath = oldFiles.get(rel);
+            Path newPath = newFiles.get(rel);
+            if (newPath == null) continue;
+            plan.add(new GumTreeExtractor.FilePair(GumTreeExtractor.FilePair.Kind.SAME_PATH, oldPath, newPath, rel, rel));
+            usedOld.add(oldPath);
+            usedNew.add(newPath);
+        }
+
+        // then renames and added/deleted files among the rest
+        List<Path> oldOnly = oldFiles.values().stream().filter(p -> !usedOld.contains(p)).toList();
+        List<Path> newOnly = newFiles.values().stream().filter(p -> !usedNew.contains(p)).toList();
+        plan.addAll(GumTreeExtractor.pairUnmatched(oldRoot, newRoot, oldOnly, newOnly));
+        return new ProjectDiff(oldRoot, newRoot, options, plan);
+    }
+
+    public Path before() {
+        return before;
+    }
+
+    public Path after() {
+        return after;
+    }
+
+    /**
+     * The summary of the last iteration or {@link #writeTo(Path)} that went through every entry, as in
+     * the report's "summary" object; null until one has.
+     */
+    public Summary summary() {
+        return summary;
+    }
+
+    /** Number of entries (files of either version, a renamed pair counting once). */
+    public int size() {
+        return plan.size();
+    }
+
+    /**
+     * Entries in report order, each computed by {@link Iterator#next()}. I/O failures surface as
+     * {@link UncheckedIOException}; a file that fails to parse is an entry with status "error".
+     */
+    @Override
+    public Iterator<FileEntry> iterator() {
+        Iterator<GumTreeExtractor.FilePair> pairs = plan.iterator();
+        GumTreeExtractor.SkipCounts counts = new GumTreeExtractor.SkipCounts();
+        ChangeStats projectStats = newProjectStats();
+        if (plan.isEmpty()) summary = Summary.of(options, counts, projectStats);
+        return new Iterator<FileEntry>() {
+            @Override
+            public boolean hasNext() {
+                return pairs.hasNext();
+            }
+
+            @Override
+            public FileEntry next() {
+                try {
+                    FileEntry entry = GumTreeExtractor.entryFor(pairs.next(), options, projectStats, counts);
+                    if (!pairs.hasNext()) summary = Summary.of(options, counts, projectStats);
+                    return entry;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /** The entries as a sequential stream, computed as they are consumed. */
+    public Stream<FileEntry> files() {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(), plan.size(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Diff every file and write the JSON report (compressed by extension, see {@link ReportStreams}).
+     * Files are read, diffed and written concurrently by a {@link DiffPipeline}; entries are written
+     * in plan order as they complete.
+     */
+    public void writeTo(Path report) throws IOException {
+        GumTreeExtractor.SkipCounts skipped = new GumTreeExtractor.SkipCounts();
+        ChangeStats projectStats = newProjectStats();
+        MoveDetector moves = options.detectMoves() ? new MoveDetector() : null;
+        try (ReportWriter out = new ReportWriter(report)) {
+            out.fields(GumTreeExtractor.reportHeader(before, after)).beginArray("files");
+            DiffPipeline.run(plan, options, projectStats, skipped, entry -> {
+                out.element(entry);
+                if (moves != null) moves.add(entry);
+            });
+            // moves and summary follow the files; closing the writer finishes the JSON (and the compressed stream)
+            out.endArray();
+            if (moves != null) writeMoves(out, moves);
+            Summary summary = Summary.of(options, skipped, projectStats);
+            if (!summary.isEmpty()) {
+                out.field("summary", summary);
+            }
+            this.summary = summary;
+        }
+    }
+
+    static void writeMoves(ReportWriter out, MoveDetector moves) throws IOException {
+        out.beginArray("moves");
+        for (MoveDetector.Move m : moves.moves()) out.element(m);
+        out.endArray();
+    }
+
+    /** Stats-only runs diff into project totals; the report mode is read from the options. */
+    private ChangeStats newProjectStats() {
+        return options.reportMode() == DiffOptions.ReportMode.STATS_ONLY ? new ChangeStats() : null;
+    }
+}
@@ -0,0 +1,347 @@
+package org.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * On-disk inverted index over diff reports. Every file entry of every report is a document; terms
+ * point to the sorted ids of the documents they occur in:
+ * <pre>
+ *   path:&lt;relative path&gt;        class:&lt;file name without extension&gt;
+ *   status:&lt;status&gt;             pair:&lt;before dir&gt;-&gt;&lt;after dir&gt;
+ *   action:&lt;Insert|Move|...&gt;     node:&lt;node type&gt;
+ *   actionnode:&lt;action&gt;/&lt;node type&gt;   report:&lt;report file name&gt;
+ * </pre>
+ * Queries binary-search a memory-mapped term table and intersect postings, so they never touch the
+ * original JSON. The index is rebuilt from the full report list on every {@link #build}.
+ */
+public class ReportIndex implements Closeable {
+
+    private static final int MAGIC = 0x53444958; // "SDIX"
+    private static final String TERMS = "terms.idx";
+    private static final String STRINGS = "strings.bin";
+    private static final String POSTINGS = "postings.bin";
+    private static final String DOCS = "docs.idx";
+    private static final String DOC_RECORDS = "docs.bin";
+    private static final String REPORTS = "reports.tsv";
+
+    /** One file entry of one report. */
+    public static final class Hit {
+        public final String report;
+        public final String pair;
+        public final String path;
+        public final String status;
+
+        Hit(String report, String pair, String path, String status) {
+            this.report = report;
+            this.pair = pair;
+            this.path = path;
+            this.status = status;
+        }
+
+        @Override
+        public String toString() {
+            return pair + "\t" + status + "\t" + path;
+        }
+    }
+
+    private final FileChannel[] channels;
+    private final MappedByteBuffer terms;
+    private final MappedByteBuffer strings;
+    private final MappedByteBuffer postings;
+    private final MappedByteBuffer docs;
+    private final MappedByteBuffer docRecords;
+    private final List<String[]> reports;
+    private final int termCount;
+
+    // ===== Build =====
+
+    /** Ingest the given reports and (re)write the index files under indexDir. */
+    public static void build(List<Path> reportFiles, Path indexDir) throws IOException {
+        Map<String, IntList> index = new HashMap<>();
+        List<String[]> reports = new ArrayList<>();
+        // doc table: report ordinal, path, status
+        List<Object[]> docs = new ArrayList<>();
+
+        for (Path report : reportFiles) {
+            int reportId = reports.size();
+            int firstDoc = docs.size();
+            String before;
+            String after;
+            // entries are indexed one at a time, so a report never has to fit in memory
+            try (ReportReader reader = ReportReader.open(report)) {
+                Map<String, String> header = reader.header();
+                before = lastSegment(header.getOrDefault("before", header.get("oldProject")));
+                after = lastSegment(header.getOrDefault("after", header.get("newProject")));
+                for (FileEntry e = reader.next(); e != null; e = reader.next()) {
+                    indexEntry(e, reportId, report.getFileName().toString(), docs, index);
+                }
+            }
+
+            String pair = before + "->" + after;
+            reports.add(new String[]{report.toAbsolutePath().normalize().toString(), pair});
+            IntList pairDocs = index.computeIfAbsent("pair:" + pair, k -> new IntList());
+            for (int docId = firstDoc; docId < docs.size(); docId++) pairDocs.add(docId);
+        }
+        write(indexDir, index, docs, reports);
+    }
+
+    private static void indexEntry(FileEntry e, int reportId, String reportName,
+                                   List<Object[]> docs, Map<String, IntList> index) {
+        int docId = docs.size();
+        String path = e.currentPath();
+        String status = e.status();
+        docs.add(new Object[]{reportId, path, status});
+
+        Set<String> docTerms = new HashSet<>();
+        docTerms.add("report:" + reportName);
+        if (status != null) docTerms.add("status:" + status);
+        for (String p : new String[]{e.path(), e.oldPath(), e.newPath()}) {
+            if (p == null) continue;
+            docTerms.add("path:" + p);
+            docTerms.add("class:" + className(p));
+        }
+        collectActionTerms(e, docTerms);
+        for (String t : docTerms) index.computeIfAbsent(t, k -> new IntList()).add(docId);
+    }
+
+    private static void collectActionTerms(FileEntry e, Set<String> terms) {
+        if (e.actions() != null) addActions(e.actions(), terms);
+        if (e.stats() != null) addStats(e.stats(), terms);
+        if (e.declarations() != null) {
+            for (DeclarationEntry section : e.declarations()) {
+                if (section.actions() != null) addActions(section.actions(), terms);
+                if (section.stats() != null) addStats(section.stats(), terms);
+            }
+        }
+    }
+
+    private static void addActions(List<ActionEntry> actions, Set<String> terms) {
+        for (ActionEntry action : actions) {
+            String kind = action.action();
+            String node = rootType(action.nodeTree());
+            if (kind != null) terms.add("action:" + kind);
+            if (node != null) terms.add("node:" + node);
+            if (kind != null && node != null) terms.add("actionnode:" + kind + "/" + node);
+        }
+    }
+
+    /** Stats-only reports carry counts, not (action, node) pairs, so only the separate terms exist. */
+    private static void addStats(ChangeStats stats, Set<String> terms) {
+        stats.actionKinds().forEach(k -> terms.add("action:" + k));
+        stats.nodeTypes().forEach(k -> terms.add("node:" + k));
+    }
+
+    private static void write(Path dir, Map<String, IntList> index, List<Object[]> docs, List<String[]> reports) throws IOException {
+        Files.createDirectories(dir);
+        List<byte[]> keys = new ArrayList<>(index.size());
+        Map<byte[], IntList> byKey = new IdentityHashMap<>();
+        for (Map.Entry<String, IntList> e : index.entrySet()) {
+            byte[] k = e.getKey().getBytes(StandardCharsets.UTF_8);
+            keys.add(k);
+            byKey.put(k, e.getValue());
+        }
+        keys.sort(Arrays::compareUnsigned);
+
+        try (DataOutputStream termOut = out(dir.resolve(TERMS));
+             DataOutputStream strOut = out(dir.resolve(STRINGS));
+             DataOutputStream postOut = out(dir.resolve(POSTINGS))) {
+            termOut.writeInt(MAGIC);
+            termOut.writeInt(keys.size());
+            int strOffset = 0;
+            int postOffset = 0;
+            for (byte[] k : keys) {
+                IntList list = byKey.get(k);
+                termOut.writeInt(strOffset);
+                termOut.writeInt(postOffset);
+                termOut.writeInt(list.size);
+                strOut.writeShort(k.length);
+                strOut.write(k);
+                strOffset += 2 + k.length;
+                for (int i = 0; i < list.size; i++) postOut.writeInt(list.values[i]);
+                postOffset += list.size;
+            }
+        }
+
+        try (DataOutputStream idxOut = out(dir.resolve(DOCS));
+             DataOutputStream recOut = out(dir.resolve(DOC_RECORDS))) {
+            idxOut.writeInt(docs.size());
+            int offset = 0;
+            for (Object[] d : docs) {
+                idxOut.writeInt(offset);
+                byte[] path = d[1] == null ? new byte[0] : ((String) d[1]).getBytes(StandardCharsets.UTF_8);
+                byte[] status = d[2] == null ? new byte[0] : ((String) d[2]).getBytes(StandardCharsets.UTF_8);
+                recOut.writeInt((Integer) d[0]);
+                recOut.writeInt(path.length);
+                recOut.write(path);
+                recOut.writeInt(status.length);
+                recOut.write(status);
+                offset += 12 + path.length + status.length;
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        for (String[] r : reports) lines.add(r[0] + "\t" + r[1]);
+        Files.write(dir.resolve(REPORTS), lines, StandardCharsets.UTF_8);
+    }
+
+    // ===== Query =====
+
+    private ReportIndex(Path dir) throws IOException {
+        channels = new FileChannel[5];
+        terms = map(dir.resolve(TERMS), 0);
+        strings = map(dir.resolve(STRINGS), 1);
+        postings = map(dir.resolve(POSTINGS), 2);
+        docs = map(dir.resolve(DOCS), 3);
+        docRecords = map(dir.resolve(DOC_RECORDS), 4);
+        if (terms.getInt(0) != MAGIC) throw new IOException("Not a report index: " + dir);
+        termCount = terms.getInt(4);
+
+        reports = new ArrayList<>();
+        for (String line : Files.readAllLines(dir.resolve(REPORTS), StandardCharsets.UTF_8)) {
+            reports.add(line.split("\t", 2));
+        }
+    }
+
+    public static ReportIndex open(Path indexDir) throws IOException {
+        return new ReportIndex(indexDir);
+    }
+
+    /** Sorted document ids containing the term; empty if the term is unknown. */
+    public int[] postings(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int lo = 0, hi = termCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareTerm(mid, key);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else {
+                int base = 8 + mid * 12;
+                int offset = terms.getInt(base + 4);
+                int length = terms.getInt(base + 8);
+                int[] ids = new int[length];
+                for (int i = 0; i < length; i++) ids[i] = postings.getInt((offset + i) * 4);
+                return ids;
+            }
+        }
+        return new int[0];
+    }
+
+    /** Documents containing all the given terms. */
+    public List<Hit> query(String... queryTerms) {
+        int[] result = null;
+        for (String t : queryTerms) {
+            int[] ids = postings(t);
+            result = result == null ? ids : intersect(result, ids);
+            if (result.length == 0) break;
+        }
+        List<Hit> hits = new ArrayList<>();
+        if (result == null) return hits;
+        for (int id : result) hits.add(doc(id));
+        return hits;
+    }
+
+    /** Distinct version pairs in which a document matches all terms, e.g. query("class:Logger", "status:modified"). */
+    public Set<String> pairs(String... queryTerms) {
+        Set<String> pairs = new LinkedHashSet<>();
+        for (Hit h : query(queryTerms)) pairs.add(h.pair);
+        return pairs;
+    }
+
+    public Hit doc(int id) {
+        int count = docs.getInt(0);
+        if (id < 0 || id >= count) throw new IndexOutOfBoundsException("No document " + id);
+        ByteBuffer b = docRecords.duplicate();
+        b.position(docs.getInt(4 + id * 4));
+        int report = b.getInt();
+        String path = readString(b);
+        String status = readString(b);
+        String[] r = reports.get(report);
+        return new Hit(r[0], r[1], path, status);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (FileChannel c : channels) {
+            if (c != null) c.close();
+        }
+    }
+
+    private int compareTerm(int termIdx, byte[] key) {
+        int strOffset = terms.getInt(8 + termIdx * 12);
+        int len = strings.getShort(strOffset) & 0xFFFF;
+        int n = Math.min(len, key.length);
+        for (int i = 0; i < n; i++) {
+            int c = Integer.compare(strings.get(strOffset + 2 + i) & 0xFF, key[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return Integer.compare(len, key.length);
+    }
+
+    private MappedByteBuffer map(Path file, int slot) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        channels[slot] = ch;
+        return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+    }
+
+    // ===== Helpers =====
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { out[k++] = a[i]; i++; j++; }
+        }
+        return Arrays.copyOf(out, k);
+    }
+
+    private static String readString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static DataOutputStream out(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), 1 << 16));
+    }
+
+    /** Node type of a Lisp tree "(Type ...)". */
+    private static String rootType(String lisp) {
+        if (lisp == null || lisp.length() < 2 || lisp.charAt(0) != '(') return null;
+        int end = 1;
+        while (end < lisp.length() && lisp.charAt(end) != ' ' && lisp.charAt(end) != ')') end++;
+        return lisp.substring(1, end);
+    }
+
+    private static String className(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String lastSegment(String dir) {
+        if (dir == null) return null;
+        Path p = Paths.get(dir).getFileName();
+        return p == null ? dir : p.toString();
+    }
+
+    /** Growable int array, avoids boxing postings while building. */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Streaming reader for project reports (plain or compressed, see {@link ReportStreams}): the header
+ * fields, then one {@link FileEntry} per {@link #next()} call, then the cross-file moves (if they
+ * were detected) and the {@link Summary}. Only the current entry is held in memory; fields this
+ * version does not know are skipped.
+ */
+public class ReportReader implements Closeable {
+
+    private final JsonReader json;
+    private final Map<String, String> header = new LinkedHashMap<>();
+    private boolean inFiles;
+    private Summary summary;
+    private List<MoveDetector.Move> moves;
+
+    private ReportReader(JsonReader json) throws IOException {
+        this.json = json;
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if ("files".equals(name) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                json.beginArray();
+                inFiles = true;
+                return;
+            }
+            if (json.peek() == JsonToken.STRING) header.put(name, json.nextString());
+            else json.skipValue();
+        }
+        finish();
+    }
+
+    public static ReportReader open(Path report) throws IOException {
+        JsonReader json = new JsonReader(new BufferedReader(
+                new InputStreamReader(ReportStreams.openInput(report), StandardCharsets.UTF_8), 1 << 16));
+        try {
+            return new ReportReader(json);
+        } catch (IOException | RuntimeException e) {
+            json.close();
+            throw e;
+        }
+    }
+
+    /** String fields before "files", e.g. "before", "after" and "generatedAt". */
+    public Map<String, String> header() {
+        return Collections.unmodifiableMap(header);
+    }
+
+    /** The next file entry, or null after the last one. */
+    public FileEntry next() throws IOException {
+        if (!inFiles) return null;
+        if (json.hasNext()) return FileEntry.ADAPTER.read(json);
+        json.endArray();
+        inFiles = false;
+        finish();
+        return null;
+    }
+
+    /** The report's summary (skipping any entries not read yet), or null if it has none. */
+    public Summary summary() throws IOException {
+        while (next() != null) {
+            // drain
+        }
+        return summary;
+    }
+
+    /** The report's cross-file moves (skipping any entries not read yet), or null if it has none. */
+    public List<MoveDetector.Move> moves() throws IOException {
+        summary();
+        return moves;
+    }
+
+    /** Fields after the files array. */
+    private void finish() throws IOException {
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if ("summary".equals(name) && json.peek() == JsonToken.BEGIN_OBJECT) {
+                summary = Summary.ADAPTER.read(json);
+            } else if ("moves".equals(name) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                moves = new ArrayList<>();
+                json.beginArray();
+                while (json.hasNext()) moves.add(MoveDetector.Move.ADAPTER.read(json));
+                json.endArray();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+}
@@ -0,0 +1,202 @@
+package org.example;
+
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Report file streams with compression picked from the file extension:
+ * <pre>
+ *   .gz       gzip (JDK)
+ *   .bz2      bzip2          (commons-compress)
+ *   .lz4      lz4 framed     (commons-compress)
+ *   .sz       snappy framed  (commons-compress)
+ *   .deflate  zlib deflate   (commons-compress)
+ *   anything else: plain
+ * </pre>
+ * Compressed output runs on a background writer thread, so compression overlaps with building
+ * and serializing the report.
+ */
+public class ReportStreams {
+
+    private static final int CHUNK = 64 * 1024;
+    private static final int MAX_PENDING_CHUNKS = 16;
+
+    /** Extension (with dot) for a codec name as accepted by the CLI, e.g. "gz" -&gt; ".gz". */
+    public static String extensionFor(String codec) {
+        if (codec == null || codec.isEmpty() || "none".equalsIgnoreCase(codec)) return "";
+        String ext = "." + codec.toLowerCase(Locale.ROOT);
+        if (commonsCodec(ext) == null && !".gz".equals(ext)) {
+            throw new IllegalArgumentException("Unsupported compression: " + codec + " (gz, bz2, lz4, sz, deflate)");
+        }
+        return ext;
+    }
+
+    public static OutputStream openOutput(Path file) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        OutputStream raw = new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), CHUNK);
+        String ext = extensionOf(file);
+        if (".gz".equals(ext)) {
+            return new AsyncOutputStream(new GZIPOutputStream(raw, CHUNK));
+        }
+        String codec = commonsCodec(ext);
+        if (codec == null) return raw;
+        try {
+            return new AsyncOutputStream(new CompressorStreamFactory().createCompressorOutputStream(codec, raw));
+        } catch (CompressorException e) {
+            raw.close();
+            throw new IOException("Cannot open " + codec + " output for " + file, e);
+        }
+    }
+
+    public static InputStream openInput(Path file) throws IOException {
+        InputStream raw = new BufferedInputStream(Files.newInputStream(file), CHUNK);
+        String ext = extensionOf(file);
+        if (".gz".equals(ext)) {
+            return new GZIPInputStream(raw, CHUNK);
+        }
+        String codec = commonsCodec(ext);
+        if (codec == null) return raw;
+        try {
+            return new CompressorStreamFactory().createCompressorInputStream(codec, raw);
+        } catch (CompressorException e) {
+            raw.close();
+            throw new IOException("Cannot open " + codec + " input for " + file, e);
+        }
+    }
+
+    private static String commonsCodec(String ext) {
+        switch (ext) {
+            case ".bz2": return CompressorStreamFactory.BZIP2;
+            case ".lz4": return CompressorStreamFactory.LZ4_FRAMED;
+            case ".sz": return CompressorStreamFactory.SNAPPY_FRAMED;
+            case ".deflate": return CompressorStreamFactory.DEFLATE;
+            default: return null;
+        }
+    }
+
+    private static String extensionOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot);
+    }
+
+    /**
+     * Hands filled 64 KB chunks to a writer thread that pushes them through the (compressing)
+     * delegate. The queue is bounded, so a slow compressor throttles the producer instead of
+     * buffering the whole report. Failures on the writer thread surface on the next write or close.
+     */
+    static final class AsyncOutputStream extends OutputStream {
+        private static final byte[] EOF = new byte[0];
+
+        private final OutputStream delegate;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(MAX_PENDING_CHUNKS);
+        private final Thread writer;
+        private volatile IOException failure;
+        private byte[] buf = new byte[CHUNK];
+        private int count;
+        private boolean closed;
+
+        AsyncOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+            this.writer = new Thread(this::drain, "report-writer");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+
+        /**
+         * Writes chunks until EOF. After a failure the remaining chunks are taken and dropped, so a
+         * producer blocked on the full queue (or close() handing over EOF) is never left waiting.
+         */
+        private void drain() {
+            try {
+                while (true) {
+                    byte[] chunk;
+                    try {
+                        chunk = queue.take();
+                    } catch (InterruptedException e) {
+                        if (failure == null) failure = new InterruptedIOException("report writer interrupted");
+                        continue;
+                    }
+                    if (chunk == EOF) break;
+                    if (failure != null) continue;
+                    try {
+                        delegate.write(chunk);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            } finally {
+                try {
+                    delegate.close();
+                } catch (IOException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buf.length) handOff();
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buf.length) handOff();
+                int n = Math.min(len, buf.length - count);
+                System.arraycopy(b, off, buf, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void handOff() throws IOException {
+            checkFailure();
+            enqueue(count == buf.length ? buf : java.util.Arrays.copyOf(buf, count));
+            buf = new byte[CHUNK];
+            count = 0;
+        }
+
+        private void enqueue(byte[] chunk) throws IOException {
+            try {
+                queue.put(chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while writing report");
+            }
+        }
+
+        private void checkFailure() throws IOException {
+            if (failure != null) throw new IOException("Report writer failed", failure);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            // EOF goes out even after a failure, so the writer thread closes the delegate and ends
+            if (count > 0 && failure == null) enqueue(java.util.Arrays.copyOf(buf, count));
+            enqueue(EOF);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while closing report");
+            }
+            checkFailure();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.example;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Writes a JSON report incrementally: header fields, then array elements as soon as they are
+ * computed, then trailing fields. The bytes are identical to pretty-printing the whole report with
+ * Gson at the end, but nothing but the current element is kept in memory. Output compression follows
+ * the file extension (see {@link ReportStreams}). Typed entries ({@link FileEntry}, {@link Summary})
+ * are written field by field through their own adapters, without reflection.
+ */
+public class ReportWriter implements Closeable {
+
+    private static final Gson GSON = gsonBuilder().setPrettyPrinting().create();
+
+    private final JsonWriter json;
+
+    /** Gson settings shared by every report writer and reader, with the report model adapters registered. */
+    static GsonBuilder gsonBuilder() {
+        return new GsonBuilder()
+                .disableHtmlEscaping()
+                .registerTypeAdapter(FileEntry.class, FileEntry.ADAPTER)
+                .registerTypeAdapter(DeclarationEntry.class, DeclarationEntry.ADAPTER)
+                .registerTypeAdapter(ActionEntry.class, ActionEntry.ADAPTER)
+                .registerTypeAdapter(ChangeStats.class, ChangeStats.ADAPTER)
+                .registerTypeAdapter(Summary.class, Summary.ADAPTER)
+                .registerTypeAdapter(MoveDetector.Move.class, MoveDetector.Move.ADAPTER);
+    }
+
+    /** Open the report and write the opening brace. */
+    public ReportWriter(Path outFile) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(ReportStreams.openOutput(outFile), StandardCharsets.UTF_8), 1 << 16);
+        this.json = GSON.newJsonWriter(w);
+        json.beginObject();
+    }
+
+    /** Write every entry of the map as a top-level field. */
+    public ReportWriter fields(Map<String, ?> fields) throws IOException {
+        for (Map.Entry<String, ?> e : fields.entrySet()) field(e.getKey(), e.getValue());
+        return this;
+    }
+
+    public ReportWriter field(String name, Object value) throws IOException {
+        json.name(name);
+        if (value == null) json.nullValue();
+        else GSON.toJson(value, value.getClass(), json);
+        return this;
+    }
+
+    public ReportWriter field(String name, Summary summary) throws IOException {
+        json.name(name);
+        Summary.ADAPTER.write(json, summary);
+        return this;
+    }
+
+    public ReportWriter beginArray(String name) throws IOException {
+        json.name(name).beginArray();
+        return this;
+    }
+
+    public ReportWriter element(Object value) throws IOException {
+        if (value == null) json.nullValue();
+        else GSON.toJson(value, value.getClass(), json);
+        return this;
+    }
+
+    public ReportWriter element(FileEntry entry) throws IOException {
+        FileEntry.ADAPTER.write(json, entry);
+        return this;
+    }
+
+    public ReportWriter endArray() throws IOException {
+        json.endArray();
+        return this;
+    }
+
+    /** Write the closing brace and flush/close the (possibly compressing) stream. */
+    @Override
+    public void close() throws IOException {
+        try {
+            json.endObject();
+        } finally {
+            json.close();
+        }
+    }
+}
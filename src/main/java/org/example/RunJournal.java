@@ -0,0 +1,230 @@
+package org.example;
+
+import com.google.gson.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Durable progress log for {@link GumTreeExtractor#compareArchivesInRoot(String, String, DiffOptions)}.
+ * One JSON object per line, appended and forced to disk as each step completes:
+ * <pre>
+ *   {"type":"extracted","archive":"...","sha1":"...","dir":"...","filter":"...","stats":{...}}
+ *   {"type":"pair","key":"...","output":"...","outputSha1":"..."}
+ * </pre>
+ * A restarted run trusts a record only while it is still valid: same archive hash and extraction dir
+ * present, same report bytes on disk. Pair keys cover both archive hashes and the diff options.
+ * <p>
+ * Within a pair, {@link PairCheckpoint} keeps every finished same-path entry (with the hashes of both
+ * input files) in a side file next to the journal, so a killed pair resumes file by file. Those lines
+ * are flushed to the OS per entry and forced to disk every {@value #FORCE_EVERY} entries.
+ */
+public class RunJournal implements Closeable {
+
+    private static final Gson COMPACT = ReportWriter.gsonBuilder().create();
+    private static final int FORCE_EVERY = 64;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<String, JsonObject> extracted = new HashMap<>();
+    private final Map<String, JsonObject> pairs = new HashMap<>();
+
+    private RunJournal(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                try {
+                    JsonObject rec = JsonParser.parseString(line).getAsJsonObject();
+                    String type = rec.get("type").getAsString();
+                    if ("extracted".equals(type)) extracted.put(rec.get("dir").getAsString(), rec);
+                    else if ("pair".equals(type)) pairs.put(rec.get("key").getAsString(), rec);
+                } catch (RuntimeException e) {
+                    // torn last line of a killed run, or a record this version cannot use
+                }
+            }
+        }
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        this.channel = openForAppend(file);
+    }
+
+    /** Open (or create) the journal; with resume off any previous progress is discarded first. */
+    public static RunJournal open(Path file, boolean resume) throws IOException {
+        if (!resume) {
+            Files.deleteIfExists(file);
+            Helpers.deleteRecursively(sideDir(file));
+        }
+        return new RunJournal(file);
+    }
+
+    // ===== Extractions =====
+
+    /** True if this archive (same content) was fully extracted into destDir, with the same filter, by an earlier run. */
+    public boolean isExtracted(String archiveSha1, Path destDir, ExtractFilter filter) {
+        JsonObject rec = extracted.get(destDir.toString());
+        return rec != null && archiveSha1.equals(rec.get("sha1").getAsString())
+                && rec.has("filter") && filter.toString().equals(rec.get("filter").getAsString())
+                && Files.isDirectory(destDir);
+    }
+
+    public void recordExtracted(Path archive, String archiveSha1, Path destDir, ExtractFilter filter,
+                                ExtractStats stats) throws IOException {
+        JsonObject rec = new JsonObject();
+        rec.addProperty("type", "extracted");
+        rec.addProperty("archive", archive.toString());
+        rec.addProperty("sha1", archiveSha1);
+        rec.addProperty("dir", destDir.toString());
+        rec.addProperty("filter", filter.toString());
+        rec.add("stats", COMPACT.toJsonTree(stats.toMap()));
+        append(rec);
+        extracted.put(destDir.toString(), rec);
+    }
+
+    // ===== Pairs =====
+
+    /** Key of one comparison: both inputs by content plus every option that shapes the report. */
+    public static String pairKey(String beforeSha1, String afterSha1, DiffOptions options) {
+        String material = beforeSha1 + "|" + afterSha1 + "|" + options.language() + "|" + options.reportMode()
+                + "|" + options.granularity() + "|" + options.skipFormattingOnly() + "|" + options.outputCompression()
+                + "|" + options.extractFilter() + "|" + options.scanExcludes()
+                + (options.detectMoves() ? "|moves" : "");
+        return Helpers.sha1(material.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** True if the report for this pair was completed and is still on disk unmodified. */
+    public boolean isPairDone(String key, Path output) throws IOException {
+        JsonObject rec = pairs.get(key);
+        return rec != null && output.toString().equals(rec.get("output").getAsString())
+                && Files.isRegularFile(output)
+                && Helpers.sha1File(output).equals(rec.get("outputSha1").getAsString());
+    }
+
+    public void recordPair(String key, Path output) throws IOException {
+        JsonObject rec = new JsonObject();
+        rec.addProperty("type", "pair");
+        rec.addProperty("key", key);
+        rec.addProperty("output", output.toString());
+        rec.addProperty("outputSha1", Helpers.sha1File(output));
+        append(rec);
+        pairs.put(key, rec);
+        Files.deleteIfExists(sideDir(file).resolve(key + ".jsonl"));
+    }
+
+    /** File-level checkpoint for the pair being diffed; entries from an interrupted attempt are reloaded. */
+    public PairCheckpoint checkpoint(String key) throws IOException {
+        Path dir = sideDir(file);
+        Files.createDirectories(dir);
+        return new PairCheckpoint(dir.resolve(key + ".jsonl"));
+    }
+
+    private void append(JsonObject rec) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap((COMPACT.toJson(rec) + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) channel.write(buf);
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Open a JSON-lines file for appending, cutting off a torn last line first: the next record would
+     * otherwise be glued onto it and both would be lost on the following resume.
+     */
+    private static FileChannel openForAppend(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long end = ch.size();
+            ByteBuffer buf = ByteBuffer.allocate(8192);
+            while (end > 0) {
+                int n = (int) Math.min(buf.capacity(), end);
+                buf.clear().limit(n);
+                long from = end - n;
+                while (buf.hasRemaining()) {
+                    if (ch.read(buf, from + buf.position()) < 0) throw new EOFException(file.toString());
+                }
+                int i = n - 1;
+                while (i >= 0 && buf.get(i) != '\n') i--;
+                if (i >= 0) {
+                    end = from + i + 1;
+                    break;
+                }
+                end = from;
+            }
+            if (end < ch.size()) {
+                ch.truncate(end);
+                ch.force(false);
+            }
+            return ch.position(end); // the only writer, so writes at the position append
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private static Path sideDir(Path journal) {
+        return journal.resolveSibling(journal.getFileName() + ".d");
+    }
+
+    /**
+     * Finished same-path entries of one pair, keyed by relative path and valid only for the same input
+     * hashes. "skip" remembers which summary counter the entry went to.
+     */
+    public static final class PairCheckpoint implements Closeable {
+        private final Map<String, JsonObject> done = new HashMap<>();
+        private final FileChannel channel;
+        private int unforced;
+
+        private PairCheckpoint(Path file) throws IOException {
+            if (Files.exists(file)) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    try {
+                        JsonObject rec = JsonParser.parseString(line).getAsJsonObject();
+                        done.put(rec.get("path").getAsString(), rec);
+                    } catch (RuntimeException e) {
+                        // torn last line
+                    }
+                }
+            }
+            this.channel = openForAppend(file);
+        }
+
+        /**
+         * The finished record for rel (with "entry" and "skip"), or null if it has to be diffed. Takes the
+         * SHA-1s of both inputs; restore and record may be called from several diff threads.
+         */
+        JsonObject restore(String rel, String oldSha1, String newSha1) {
+            JsonObject rec = done.get(rel);
+            if (rec == null) return null;
+            boolean valid = oldSha1.equals(rec.get("oldSha1").getAsString())
+                    && newSha1.equals(rec.get("newSha1").getAsString());
+            return valid ? rec : null;
+        }
+
+        synchronized void record(String rel, String oldSha1, String newSha1, FileEntry entry, String skip) throws IOException {
+            JsonObject rec = new JsonObject();
+            rec.addProperty("path", rel);
+            rec.addProperty("oldSha1", oldSha1);
+            rec.addProperty("newSha1", newSha1);
+            if (skip != null) rec.addProperty("skip", skip);
+            rec.add("entry", COMPACT.toJsonTree(entry));
+            ByteBuffer buf = ByteBuffer.wrap((COMPACT.toJson(rec) + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) channel.write(buf);
+            if (++unforced >= FORCE_EVERY) {
+                channel.force(false);
+                unforced = 0;
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            channel.force(false);
+            channel.close();
+        }
+    }
+}
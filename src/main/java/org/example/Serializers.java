@@ -81,6 +81,60 @@ public class Serializers {
         indent(sb, depth).append(')').append('\n');
     }
 
+    /** ---------- 3) The same two formats straight from a {@link CompactTree} ----------
+     * Output is identical to serializing {@link CompactTree#toTree()}. The walk follows the
+     * first-child / next-sibling / parent links without recursion, so nesting depth is unbounded.
+     */
+    public static String toLisp(CompactTree tree) {
+        StringBuilder sb = new StringBuilder(256);
+        int n = tree.root();
+        while (true) {
+            sb.append('(').append(safeTypeName(tree.type(n)));
+            if (tree.hasLabel(n)) {
+                sb.append(' ').append('"').append(escapeForSexp(tree.label(n))).append('"');
+            }
+            if (tree.firstChild(n) != CompactTree.NONE) {
+                n = tree.firstChild(n);
+                sb.append(' ');
+                continue;
+            }
+            // close n and every ancestor whose last child has just been closed
+            sb.append(')');
+            while (n != tree.root() && tree.nextSibling(n) == CompactTree.NONE) {
+                n = tree.parent(n);
+                sb.append(')');
+            }
+            if (n == tree.root()) return sb.toString();
+            n = tree.nextSibling(n);
+            sb.append(' ');
+        }
+    }
+
+    public static String toTreeSitterString(CompactTree tree) {
+        StringBuilder sb = new StringBuilder(256);
+        int n = tree.root();
+        int depth = 0;
+        while (true) {
+            indent(sb, depth).append('(').append(safeTypeName(tree.type(n)));
+            if (tree.hasLabel(n)) {
+                sb.append(' ').append('"').append(escapeForSexp(tree.label(n))).append('"');
+            }
+            if (tree.firstChild(n) != CompactTree.NONE) {
+                sb.append('\n');
+                n = tree.firstChild(n);
+                depth++;
+                continue;
+            }
+            sb.append(')').append('\n');
+            while (n != tree.root() && tree.nextSibling(n) == CompactTree.NONE) {
+                n = tree.parent(n);
+                indent(sb, --depth).append(')').append('\n');
+            }
+            if (n == tree.root()) return sb.toString();
+            n = tree.nextSibling(n);
+        }
+    }
+
     private static StringBuilder indent(StringBuilder sb, int depth) {
         for (int i = 0; i < depth; i++) sb.append("  ");
         return sb;
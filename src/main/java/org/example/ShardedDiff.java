@@ -0,0 +1,285 @@
+package org.example;
+
+import com.google.gson.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.example.Helpers.listCodeFiles;
+
+/**
+ * Project diff spread over several local worker JVMs, so no single heap has to hold the whole run.
+ * The coordinator hashes the same-path files into N shards and starts one worker per shard; each
+ * worker writes a partial report sorted by path. Meanwhile the coordinator runs rename detection
+ * (which needs every unmatched file of both versions) itself. The partial reports are then merged
+ * by path, so the final report has the same entry order as
+ * {@link GumTreeExtractor#saveProjectDiffToJson(String, String, String, DiffOptions)}.
+ * The {@link DiffOptions#diffThreads()} and {@link DiffOptions#pipelineWindow()} budgets are split
+ * between the workers and the coordinator, so the run holds about as many threads and in-flight
+ * trees as a single-JVM diff would.
+ */
+public class ShardedDiff {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    /**
+     * Same report as the single-JVM diff, computed by {@code shards} worker processes.
+     *
+     * @param workerHeap -Xmx value for every worker (e.g. "2g"), or null for the JVM default
+     */
+    public static void saveProjectDiffToJson(String oldProjectDir, String newProjectDir, String outputJson,
+                                             DiffOptions options, int shards, String workerHeap) throws IOException {
+        if (shards <= 1) {
+            GumTreeExtractor.saveProjectDiffToJson(oldProjectDir, newProjectDir, outputJson, options);
+            return;
+        }
+        Path oldRoot = Paths.get(oldProjectDir).toAbsolutePath().normalize();
+        Path newRoot = Paths.get(newProjectDir).toAbsolutePath().normalize();
+        Path outFile = Paths.get(outputJson).toAbsolutePath();
+
+        Map<String, Path> oldFiles = listCodeFiles(oldRoot, GumTreeExtractor.CODE_EXTENSIONS, options.scanExcludes());
+        Map<String, Path> newFiles = listCodeFiles(newRoot, GumTreeExtractor.CODE_EXTENSIONS, options.scanExcludes());
+
+        // 1) Partition the same-path files; each shard keeps the sorted order of the listing
+        List<List<String>> shardPaths = new ArrayList<>();
+        for (int k = 0; k < shards; k++) shardPaths.add(new ArrayList<>());
+        Set<Path> usedOld = new HashSet<>();
+        Set<Path> usedNew = new HashSet<>();
+        for (Map.Entry<String, Path> e : oldFiles.entrySet()) {
+            Path newPath = newFiles.get(e.getKey());
+            if (newPath == null) continue;
+            shardPaths.get(Math.floorMod(e.getKey().hashCode(), shards)).add(e.getKey());
+            usedOld.add(e.getValue());
+            usedNew.add(newPath);
+        }
+
+        int workerThreads = Math.max(1, options.diffThreads() / shards);
+        int workerWindow = Math.max(2, options.pipelineWindow() / shards);
+
+        Path workDir = Files.createTempDirectory("semanticDiff-shards");
+        List<Process> workers = new ArrayList<>();
+        try {
+            // 2) Start the workers
+            List<Path> partials = new ArrayList<>();
+            for (int k = 0; k < shards; k++) {
+                if (shardPaths.get(k).isEmpty()) continue;
+                Path manifest = workDir.resolve("shard-" + k + ".manifest.json");
+                Path partial = workDir.resolve("shard-" + k + ".json");
+                writeManifest(manifest, oldRoot, newRoot, options, workerThreads, workerWindow, shardPaths.get(k));
+                workers.add(startWorker(manifest, partial, workerHeap));
+                partials.add(partial);
+            }
+            System.out.println("Started " + workers.size() + " diff workers for "
+                    + usedOld.size() + " same-path files");
+
+            // 3) Rename detection and added/deleted files on the coordinator, while the workers run
+            ChangeStats projectStats = options.reportMode() == DiffOptions.ReportMode.STATS_ONLY ? new ChangeStats() : null;
+            GumTreeExtractor.SkipCounts skipped = new GumTreeExtractor.SkipCounts();
+            Path unpaired = workDir.resolve("unpaired.json");
+            int threads = options.diffThreads();
+            int window = options.pipelineWindow();
+            try (ReportWriter out = new ReportWriter(unpaired)) {
+                out.beginArray("files");
+                List<Path> oldOnly = oldFiles.values().stream().filter(p -> !usedOld.contains(p)).toList();
+                List<Path> newOnly = newFiles.values().stream().filter(p -> !usedNew.contains(p)).toList();
+                // whatever the workers leave of the budget, at least one thread
+                options.diffThreads(Math.max(1, threads - workers.size() * workerThreads))
+                        .pipelineWindow(Math.max(2, window - workers.size() * workerWindow));
+                GumTreeExtractor.writeUnpairedEntries(out, oldRoot, newRoot, oldOnly, newOnly, options, projectStats, skipped);
+                out.endArray();
+            } finally {
+                options.diffThreads(threads).pipelineWindow(window);
+            }
+
+            for (int k = 0; k < workers.size(); k++) {
+                int exit = waitFor(workers.get(k));
+                if (exit != 0) {
+                    throw new IOException("Diff worker for " + partials.get(k).getFileName() + " failed with exit code " + exit);
+                }
+            }
+
+            // 4) Merge: same-path entries by path, then the coordinator's entries, then the summed summary
+            try (ReportWriter out = new ReportWriter(outFile)) {
+                out.fields(GumTreeExtractor.reportHeader(oldRoot, newRoot)).beginArray("files");
+                MoveDetector moves = options.detectMoves() ? new MoveDetector() : null;
+                mergeByPath(partials, out, skipped, projectStats, moves);
+                try (ReportReader reader = ReportReader.open(unpaired)) {
+                    for (FileEntry e = reader.next(); e != null; e = reader.next()) {
+                        out.element(e);
+                        if (moves != null) moves.add(e);
+                    }
+                }
+                out.endArray();
+                if (moves != null) ProjectDiff.writeMoves(out, moves);
+                Summary summary = Summary.of(options, skipped, projectStats);
+                if (!summary.isEmpty()) {
+                    out.field("summary", summary);
+                }
+            }
+        } finally {
+            // on any failure, workers still running would keep writing into workDir: stop them first
+            stopWorkers(workers);
+            Helpers.deleteRecursively(workDir);
+        }
+    }
+
+    /** Worker entry point: {@code ShardedDiff <manifest.json> <partial.json>}. */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: ShardedDiff <manifest.json> <partial.json>");
+            System.exit(2);
+        }
+        try {
+            runWorker(Paths.get(args[0]), Paths.get(args[1]));
+        } catch (Exception e) {
+            System.err.println("Worker error: " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void runWorker(Path manifestFile, Path partialFile) throws IOException {
+        JsonObject manifest = JsonParser.parseString(Files.readString(manifestFile)).getAsJsonObject();
+        Path oldRoot = Paths.get(manifest.get("before").getAsString());
+        Path newRoot = Paths.get(manifest.get("after").getAsString());
+        Set<String> binaryUnchanged = new HashSet<>();
+        for (JsonElement e : manifest.getAsJsonArray("binaryUnchangedSources")) binaryUnchanged.add(e.getAsString());
+        DiffOptions options = DiffOptions.forLanguage(manifest.get("language").getAsString())
+                .reportMode(DiffOptions.ReportMode.valueOf(manifest.get("reportMode").getAsString()))
+                .granularity(DiffOptions.Granularity.valueOf(manifest.get("granularity").getAsString()))
+                .skipFormattingOnly(manifest.get("skipFormattingOnly").getAsBoolean())
+                .diffThreads(manifest.get("diffThreads").getAsInt())
+                .pipelineWindow(manifest.get("pipelineWindow").getAsInt())
+                .binaryUnchangedSources(binaryUnchanged);
+        if (manifest.has("cacheMemoryBytes")) {
+            // own memory tier; the disk tier (if any) is shared with the coordinator and the other workers
+            String dir = manifest.has("cacheDir") ? manifest.get("cacheDir").getAsString() : null;
+            options.editScriptCache(new EditScriptCache(manifest.get("cacheMemoryBytes").getAsLong(),
+                    dir == null ? null : Paths.get(dir)));
+        }
+
+        GumTreeExtractor.SkipCounts skipped = new GumTreeExtractor.SkipCounts();
+        ChangeStats projectStats = options.reportMode() == DiffOptions.ReportMode.STATS_ONLY ? new ChangeStats() : null;
+        try (ReportWriter out = new ReportWriter(partialFile)) {
+            out.beginArray("files");
+            List<GumTreeExtractor.FilePair> plan = new ArrayList<>();
+            for (JsonElement e : manifest.getAsJsonArray("paths")) {
+                String rel = e.getAsString();
+                plan.add(new GumTreeExtractor.FilePair(GumTreeExtractor.FilePair.Kind.SAME_PATH,
+                        oldRoot.resolve(rel), newRoot.resolve(rel), rel, rel));
+            }
+            DiffPipeline.run(plan, options, projectStats, skipped, out::element);
+            out.endArray();
+            // counts are always written so the coordinator can sum them
+            out.field("summary", Summary.ofAll(skipped, projectStats));
+        }
+    }
+
+    // ===== Coordinator helpers =====
+
+    private static void writeManifest(Path manifest, Path oldRoot, Path newRoot, DiffOptions options,
+                                      int threads, int window, List<String> paths) throws IOException {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("before", oldRoot.toString());
+        m.put("after", newRoot.toString());
+        m.put("language", options.language());
+        m.put("reportMode", options.reportMode().name());
+        m.put("granularity", options.granularity().name());
+        m.put("skipFormattingOnly", options.skipFormattingOnly());
+        m.put("diffThreads", threads);
+        m.put("pipelineWindow", window);
+        m.put("binaryUnchangedSources", new TreeSet<>(options.binaryUnchangedSources()));
+        EditScriptCache cache = options.editScriptCache();
+        if (cache != null) {
+            m.put("cacheMemoryBytes", cache.maxMemoryBytes());
+            if (cache.diskDir() != null) m.put("cacheDir", cache.diskDir().toString());
+        }
+        m.put("paths", paths);
+        Files.write(manifest, GSON.toJson(m).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Process startWorker(Path manifest, Path partial, String workerHeap) throws IOException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (workerHeap != null) cmd.add("-Xmx" + workerHeap);
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(ShardedDiff.class.getName());
+        cmd.add(manifest.toString());
+        cmd.add(partial.toString());
+        return new ProcessBuilder(cmd).inheritIO().start();
+    }
+
+    /** Kill the workers that have not exited and wait until they are gone. */
+    private static void stopWorkers(List<Process> workers) {
+        workers.forEach(Process::destroyForcibly);
+        boolean interrupted = false;
+        for (Process p : workers) {
+            while (p.isAlive()) {
+                try {
+                    p.waitFor();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static int waitFor(Process p) throws IOException {
+        try {
+            return p.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            p.destroy();
+            throw new InterruptedIOException("interrupted while waiting for a diff worker");
+        }
+    }
+
+    /** One partial report being read: the entry at its head, or null once its files are exhausted. */
+    private static final class Cursor {
+        final ReportReader reader;
+        FileEntry head;
+
+        Cursor(ReportReader reader) {
+            this.reader = reader;
+        }
+
+        String path() {
+            return head.path;
+        }
+
+        void advance() throws IOException {
+            head = reader.next();
+        }
+    }
+
+    /** K-way merge of the sorted partial reports; summaries are folded into the run totals. */
+    private static void mergeByPath(List<Path> partials, ReportWriter out, GumTreeExtractor.SkipCounts skipped,
+                                    ChangeStats projectStats, MoveDetector moves) throws IOException {
+        List<Cursor> cursors = new ArrayList<>();
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Comparator.comparing(Cursor::path));
+        try {
+            for (Path partial : partials) {
+                Cursor c = new Cursor(ReportReader.open(partial));
+                cursors.add(c);
+                c.advance();
+                if (c.head != null) queue.add(c);
+            }
+            while (!queue.isEmpty()) {
+                Cursor c = queue.poll();
+                out.element(c.head);
+                if (moves != null) moves.add(c.head);
+                c.advance();
+                if (c.head != null) queue.add(c);
+            }
+            for (Cursor c : cursors) {
+                Summary summary = c.reader.summary();
+                if (summary != null) summary.addTo(skipped, projectStats);
+            }
+        } finally {
+            for (Cursor c : cursors) c.reader.close();
+        }
+    }
+}
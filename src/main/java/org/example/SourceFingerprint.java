@@ -0,0 +1,201 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Formatting-insensitive fingerprint of a Java or Kotlin source file. A single-pass lexer drops
+ * whitespace and comments and keeps everything else verbatim, including string, char and text-block
+ * literals, so two files with the same fingerprint only differ in layout or comments.
+ * <p>
+ * Whitespace is not thrown away blindly: a single space is kept where it separates two identifier or
+ * two operator characters ("int a", "a - -b"), and in Kotlin a line break is kept as one '\n' where
+ * it could end a statement.
+ */
+public class SourceFingerprint {
+
+    /** How a file pair compares before any parsing. */
+    public enum Match { IDENTICAL, SAME_TOKENS, DIFFERENT }
+
+    private static final String OPERATOR_CHARS = "+-*/%=<>!&|^~?:.@#";
+
+    /** Compare raw bytes first, then the normalized token text. */
+    public static Match compare(Path oldFile, Path newFile) throws IOException {
+        return compare(oldFile, Files.readAllBytes(oldFile), newFile, Files.readAllBytes(newFile));
+    }
+
+    /** Same as {@link #compare(Path, Path)} for contents that have already been read. */
+    public static Match compare(Path oldFile, byte[] a, Path newFile, byte[] b) {
+        if (Arrays.equals(a, b)) return Match.IDENTICAL;
+        boolean kotlin = isKotlin(oldFile) && isKotlin(newFile);
+        String na = normalize(new String(a, StandardCharsets.UTF_8), kotlin);
+        String nb = normalize(new String(b, StandardCharsets.UTF_8), kotlin);
+        return na.equals(nb) ? Match.SAME_TOKENS : Match.DIFFERENT;
+    }
+
+    /** SHA-1 of the normalized token text, for callers that keep fingerprints around. */
+    public static String of(Path file) throws IOException {
+        return of(Files.readString(file, StandardCharsets.UTF_8), isKotlin(file));
+    }
+
+    public static String of(String source, boolean kotlin) {
+        return Helpers.sha1(normalize(source, kotlin).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Source text with comments removed and whitespace reduced to the separators that matter. */
+    static String normalize(String source, boolean kotlin) {
+        Lexer lexer = new Lexer(source, kotlin);
+        lexer.code(false);
+        return lexer.out.toString();
+    }
+
+    private static boolean isKotlin(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".kt") || name.endsWith(".kts");
+    }
+
+    private static final class Lexer {
+        private final String s;
+        private final int n;
+        private final boolean kotlin;
+        private final StringBuilder out;
+        private int i;
+        private boolean gap;
+        private boolean newline;
+
+        Lexer(String s, boolean kotlin) {
+            this.s = s;
+            this.n = s.length();
+            this.kotlin = kotlin;
+            this.out = new StringBuilder(s.length());
+        }
+
+        /** Lex code; with untilBrace, stop before the '}' that closes a Kotlin "${...}" template. */
+        void code(boolean untilBrace) {
+            int depth = 0;
+            while (i < n) {
+                char c = s.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    if (c == '\n') newline = true;
+                    gap = true;
+                    i++;
+                } else if (c == '/' && i + 1 < n && s.charAt(i + 1) == '/') {
+                    while (i < n && s.charAt(i) != '\n') i++;
+                    gap = true;
+                } else if (c == '/' && i + 1 < n && s.charAt(i + 1) == '*') {
+                    skipBlockComment();
+                    gap = true;
+                } else if (c == '"') {
+                    if (s.startsWith("\"\"\"", i)) tripleQuoted();
+                    else quoted('"');
+                } else if (c == '\'') {
+                    quoted('\'');
+                } else {
+                    if (untilBrace) {
+                        if (c == '{') depth++;
+                        else if (c == '}' && depth-- == 0) return;
+                    }
+                    emit(c);
+                    i++;
+                }
+            }
+        }
+
+        /** Kotlin block comments nest, Java ones end at the first close. */
+        private void skipBlockComment() {
+            int depth = 0;
+            while (i < n) {
+                if (s.startsWith("/*", i)) {
+                    depth++;
+                    i += 2;
+                } else if (s.startsWith("*/", i)) {
+                    i += 2;
+                    if (--depth == 0 || !kotlin) return;
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        /** "..." or '...': copied verbatim up to the closing quote (or the end of the line if unterminated). */
+        private void quoted(char quote) {
+            emit(quote);
+            i++;
+            while (i < n) {
+                char c = s.charAt(i);
+                if (c == '\\' && i + 1 < n) {
+                    out.append(c).append(s.charAt(i + 1));
+                    i += 2;
+                } else if (kotlin && quote == '"' && c == '$' && i + 1 < n && s.charAt(i + 1) == '{') {
+                    template();
+                } else {
+                    out.append(c);
+                    i++;
+                    if (c == quote || c == '\n') return;
+                }
+            }
+        }
+
+        /** Java text block or Kotlin raw string, copied verbatim including its indentation. */
+        private void tripleQuoted() {
+            emit('"');
+            out.append("\"\"");
+            i += 3;
+            while (i < n) {
+                if (s.startsWith("\"\"\"", i)) {
+                    out.append("\"\"\"");
+                    i += 3;
+                    return;
+                }
+                char c = s.charAt(i);
+                if (!kotlin && c == '\\' && i + 1 < n) {
+                    out.append(c).append(s.charAt(i + 1));
+                    i += 2;
+                } else if (kotlin && c == '$' && i + 1 < n && s.charAt(i + 1) == '{') {
+                    template();
+                } else {
+                    out.append(c);
+                    i++;
+                }
+            }
+        }
+
+        /** Kotlin "${expr}": the expression is code again, so it is normalized like code. */
+        private void template() {
+            out.append("${");
+            i += 2;
+            gap = false;
+            newline = false;
+            code(true);
+            out.append('}');
+            gap = false;
+            newline = false;
+            i++;
+        }
+
+        private void emit(char c) {
+            if (gap && out.length() > 0) {
+                char last = out.charAt(out.length() - 1);
+                if (kotlin && newline && endsStatement(last, c)) out.append('\n');
+                else if (joins(last, c)) out.append(' ');
+            }
+            gap = false;
+            newline = false;
+            out.append(c);
+        }
+
+        /** A Kotlin line break cannot end a statement after an opener or separator, or before a closer or '.'/'?'. */
+        private static boolean endsStatement(char last, char next) {
+            return "{([,;=".indexOf(last) < 0 && "})].?".indexOf(next) < 0;
+        }
+
+        private static boolean joins(char a, char b) {
+            return (Character.isJavaIdentifierPart(a) && Character.isJavaIdentifierPart(b))
+                    || (OPERATOR_CHARS.indexOf(a) >= 0 && OPERATOR_CHARS.indexOf(b) >= 0);
+        }
+    }
+}
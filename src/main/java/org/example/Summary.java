@@ -0,0 +1,145 @@
+package org.example;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * The "summary" object after a report's files: how many pairs were answered without parsing, the
+ * edit-script cache lookups and, in stats-only mode, the project totals. Counters a run did not use
+ * are null and left out of the report.
+ */
+public final class Summary {
+
+    Integer binaryUnchangedSkipped;
+    Integer fingerprintSkipped;
+    Integer cacheMemoryHits;
+    Integer cacheDiskHits;
+    Integer cacheMisses;
+    ChangeStats stats;
+
+    public Integer binaryUnchangedSkipped() {
+        return binaryUnchangedSkipped;
+    }
+
+    public Integer fingerprintSkipped() {
+        return fingerprintSkipped;
+    }
+
+    public Integer cacheMemoryHits() {
+        return cacheMemoryHits;
+    }
+
+    public Integer cacheDiskHits() {
+        return cacheDiskHits;
+    }
+
+    public Integer cacheMisses() {
+        return cacheMisses;
+    }
+
+    public ChangeStats stats() {
+        return stats;
+    }
+
+    /** The summary of a finished run: only the counters its options switched on. */
+    static Summary of(DiffOptions options, GumTreeExtractor.SkipCounts counts, ChangeStats projectStats) {
+        Summary s = new Summary();
+        if (!options.binaryUnchangedSources().isEmpty()) s.binaryUnchangedSkipped = counts.binary;
+        if (options.skipFormattingOnly()) s.fingerprintSkipped = counts.fingerprint;
+        if (options.editScriptCache() != null) {
+            s.cacheMemoryHits = counts.cacheMemoryHits;
+            s.cacheDiskHits = counts.cacheDiskHits;
+            s.cacheMisses = counts.cacheMisses;
+        }
+        s.stats = projectStats;
+        return s;
+    }
+
+    /** Every counter, for partial reports whose summaries are summed later. */
+    static Summary ofAll(GumTreeExtractor.SkipCounts counts, ChangeStats projectStats) {
+        Summary s = new Summary();
+        s.binaryUnchangedSkipped = counts.binary;
+        s.fingerprintSkipped = counts.fingerprint;
+        s.cacheMemoryHits = counts.cacheMemoryHits;
+        s.cacheDiskHits = counts.cacheDiskHits;
+        s.cacheMisses = counts.cacheMisses;
+        s.stats = projectStats;
+        return s;
+    }
+
+    /** Fold these counts into a run's counters (and stats into its totals, if it keeps any). */
+    void addTo(GumTreeExtractor.SkipCounts counts, ChangeStats projectStats) {
+        counts.binary += orZero(binaryUnchangedSkipped);
+        counts.fingerprint += orZero(fingerprintSkipped);
+        counts.cacheMemoryHits += orZero(cacheMemoryHits);
+        counts.cacheDiskHits += orZero(cacheDiskHits);
+        counts.cacheMisses += orZero(cacheMisses);
+        if (projectStats != null && stats != null) projectStats.add(stats);
+    }
+
+    public boolean isEmpty() {
+        return binaryUnchangedSkipped == null && fingerprintSkipped == null && cacheMemoryHits == null && stats == null;
+    }
+
+    private static int orZero(Integer n) {
+        return n == null ? 0 : n;
+    }
+
+    static final TypeAdapter<Summary> ADAPTER = new TypeAdapter<Summary>() {
+        @Override
+        public void write(JsonWriter out, Summary s) throws IOException {
+            out.beginObject();
+            if (s.binaryUnchangedSkipped != null) out.name("binaryUnchangedSkipped").value(s.binaryUnchangedSkipped);
+            if (s.fingerprintSkipped != null) out.name("fingerprintSkipped").value(s.fingerprintSkipped);
+            if (s.cacheMemoryHits != null) {
+                out.name("editScriptCache").beginObject();
+                out.name("memoryHits").value(s.cacheMemoryHits);
+                out.name("diskHits").value(orZero(s.cacheDiskHits));
+                out.name("misses").value(orZero(s.cacheMisses));
+                out.endObject();
+            }
+            if (s.stats != null) {
+                out.name("stats");
+                ChangeStats.ADAPTER.write(out, s.stats);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Summary read(JsonReader in) throws IOException {
+            Summary s = new Summary();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "binaryUnchangedSkipped": s.binaryUnchangedSkipped = in.nextInt(); break;
+                    case "fingerprintSkipped": s.fingerprintSkipped = in.nextInt(); break;
+                    case "editScriptCache":
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            switch (in.nextName()) {
+                                case "memoryHits": s.cacheMemoryHits = in.nextInt(); break;
+                                case "diskHits": s.cacheDiskHits = in.nextInt(); break;
+                                case "misses": s.cacheMisses = in.nextInt(); break;
+                                default: in.skipValue();
+                            }
+                        }
+                        in.endObject();
+                        break;
+                    case "stats": s.stats = ChangeStats.ADAPTER.read(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return s;
+        }
+    };
+}
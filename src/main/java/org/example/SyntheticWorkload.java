@@ -0,0 +1,252 @@
+package org.example;
+
+import com.github.gumtreediff.tree.Tree;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Generates a pair of Java project trees (before/ and after/) with controlled shape, for scaling
+ * measurements that real corpora do not reach: file count, nodes per file, expression nesting depth,
+ * edit density, share of moved files and share of formatting-only changes. Generation is
+ * deterministic for a given seed. The files only have to parse, not compile.
+ */
+public class SyntheticWorkload {
+
+    private static final int FILES_PER_PACKAGE = 50;
+    private static final int STATEMENTS_PER_METHOD = 20;
+    /** Rough AST size of one generated statement, used to turn nodesPerFile into a statement count. */
+    private static final int NODES_PER_STATEMENT = 10;
+    private static final int STATEMENT_KINDS = 5;
+
+    private int files = 100;
+    private int nodesPerFile = 500;
+    private int depth = 0;
+    private double editDensity = 0.1;
+    private double renameRatio = 0.05;
+    private double formattingRatio = 0.1;
+    private long seed = 42;
+
+    public SyntheticWorkload files(int files) {
+        this.files = files;
+        return this;
+    }
+
+    /** Approximate AST nodes per file (excluding the deep expression). */
+    public SyntheticWorkload nodesPerFile(int nodesPerFile) {
+        this.nodesPerFile = nodesPerFile;
+        return this;
+    }
+
+    /** Nesting depth of one parenthesized expression chain per file; 0 for none. */
+    public SyntheticWorkload depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    /** Share of statements updated, deleted, inserted after or swapped in edited files. */
+    public SyntheticWorkload editDensity(double editDensity) {
+        this.editDensity = editDensity;
+        return this;
+    }
+
+    /** Share of files moved to another package directory (same class and file name). */
+    public SyntheticWorkload renameRatio(double renameRatio) {
+        this.renameRatio = renameRatio;
+        return this;
+    }
+
+    /** Share of files that are only reformatted (indentation, braces, comments). */
+    public SyntheticWorkload formattingRatio(double formattingRatio) {
+        this.formattingRatio = formattingRatio;
+        return this;
+    }
+
+    public SyntheticWorkload seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /** Write outDir/before and outDir/after. */
+    public void generate(Path outDir) throws IOException {
+        Random rnd = new Random(seed);
+        Path before = outDir.resolve("before");
+        Path after = outDir.resolve("after");
+        int statements = Math.max(1, nodesPerFile / NODES_PER_STATEMENT);
+
+        for (int i = 0; i < files; i++) {
+            String pkg = "synth.p" + (i / FILES_PER_PACKAGE);
+            String cls = String.format(Locale.ROOT, "C%05d", i);
+            List<List<Stmt>> methods = randomMethods(rnd, statements);
+            write(before, pkg, cls, render(pkg, cls, methods, false));
+
+            double roll = rnd.nextDouble();
+            if (roll < renameRatio) {
+                String movedPkg = pkg + ".moved";
+                write(after, movedPkg, cls, render(movedPkg, cls, edit(rnd, methods), false));
+            } else if (roll < renameRatio + formattingRatio) {
+                write(after, pkg, cls, render(pkg, cls, methods, true));
+            } else {
+                write(after, pkg, cls, render(pkg, cls, edit(rnd, methods), false));
+            }
+        }
+    }
+
+    /** Benchmark scenario: generate once, then time a full project diff of before against after. */
+    MacroBenchmark.Scenario diffScenario(String name) {
+        return diffScenario(name, new DiffOptions());
+    }
+
+    /** Same as {@link #diffScenario(String)}, diffing with the given options. */
+    MacroBenchmark.Scenario diffScenario(String name, DiffOptions options) {
+        return new MacroBenchmark.Scenario(name, List.of(),
+                work -> generate(work.resolve("input")),
+                work -> {
+                    Path out = work.resolve(name + ".json");
+                    GumTreeExtractor.saveProjectDiffToJson(work.resolve("input/before").toString(),
+                            work.resolve("input/after").toString(), out.toString(), options);
+                    return Files.size(out);
+                },
+                work -> MacroBenchmark.sourceWorkload(work.resolve("input/before"), work.resolve("input/after")));
+    }
+
+    /**
+     * Benchmark scenario: parse the after tree once, then time both {@link Serializers} over every file.
+     * With compact, the parsed trees are held as {@link CompactTree}s and serialized from those.
+     */
+    MacroBenchmark.Scenario serializeScenario(String name, boolean compact) {
+        List<Tree> trees = new ArrayList<>();
+        List<CompactTree> compactTrees = new ArrayList<>();
+        return new MacroBenchmark.Scenario(name, List.of(),
+                work -> {
+                    generate(work.resolve("input"));
+                    for (Path f : Helpers.listCodeFiles(work.resolve("input/after"), Set.of(".java")).values()) {
+                        Tree t = GeneratorDispatcher.parse(f, "java");
+                        if (compact) compactTrees.add(CompactTree.of(t));
+                        else trees.add(t);
+                    }
+                },
+                work -> {
+                    long chars = 0;
+                    for (Tree t : trees) {
+                        chars += Serializers.toLisp(t).length();
+                        chars += Serializers.toTreeSitterString(t).length();
+                    }
+                    for (CompactTree t : compactTrees) {
+                        chars += Serializers.toLisp(t).length();
+                        chars += Serializers.toTreeSitterString(t).length();
+                    }
+                    return chars;
+                },
+                work -> MacroBenchmark.sourceWorkload(work.resolve("input/after")));
+    }
+
+    // ===== Model =====
+
+    /** One statement: a template kind and the number that varies between versions. */
+    private static final class Stmt {
+        final int kind;
+        final int n;
+
+        Stmt(int kind, int n) {
+            this.kind = kind;
+            this.n = n;
+        }
+
+        String render() {
+            switch (kind) {
+                case 0: return "int v" + n + " = a + " + n + ";";
+                case 1: return "if (a > " + n + ") { a = a * " + n + "; }";
+                case 2: return "s = s + \"t" + n + "\";";
+                case 3: return "a = helper" + (n % 7) + "(a, s);";
+                default: return "for (int i = 0; i < " + n + "; i++) { a += i; }";
+            }
+        }
+    }
+
+    private static Stmt randomStmt(Random rnd) {
+        return new Stmt(rnd.nextInt(STATEMENT_KINDS), rnd.nextInt(1000));
+    }
+
+    private static List<List<Stmt>> randomMethods(Random rnd, int statements) {
+        List<List<Stmt>> methods = new ArrayList<>();
+        for (int left = statements; left > 0; left -= STATEMENTS_PER_METHOD) {
+            List<Stmt> body = new ArrayList<>();
+            for (int k = 0; k < Math.min(left, STATEMENTS_PER_METHOD); k++) body.add(randomStmt(rnd));
+            methods.add(body);
+        }
+        return methods;
+    }
+
+    /** Copy of the methods with roughly editDensity of the statements updated, deleted, inserted or moved. */
+    private List<List<Stmt>> edit(Random rnd, List<List<Stmt>> methods) {
+        List<List<Stmt>> out = new ArrayList<>();
+        for (List<Stmt> m : methods) {
+            List<Stmt> body = new ArrayList<>(m);
+            for (int k = 0; k < body.size(); k++) {
+                if (rnd.nextDouble() >= editDensity) continue;
+                switch (rnd.nextInt(4)) {
+                    case 0:
+                        body.set(k, new Stmt(body.get(k).kind, body.get(k).n + 1));
+                        break;
+                    case 1:
+                        body.remove(k--);
+                        break;
+                    case 2:
+                        body.add(++k, randomStmt(rnd));
+                        break;
+                    default:
+                        if (k + 1 < body.size()) Collections.swap(body, k, ++k);
+                }
+            }
+            out.add(body);
+        }
+        return out;
+    }
+
+    // ===== Rendering =====
+
+    /** The alternate style differs only in whitespace and comments, so both render to the same tokens. */
+    private String render(String pkg, String cls, List<List<Stmt>> methods, boolean alternateStyle) {
+        String indent = alternateStyle ? "  " : "    ";
+        String open = alternateStyle ? "\n" + indent + "{" : " {";
+        StringBuilder sb = new StringBuilder();
+        if (alternateStyle) sb.append("/*\n * Reformatted copy.\n */\n");
+        sb.append("package ").append(pkg).append(";\n\n");
+        sb.append("public class ").append(cls).append(alternateStyle ? "\n{" : " {").append('\n');
+        for (int m = 0; m < methods.size(); m++) {
+            sb.append(indent).append("public int m").append(m).append("(int a, String s)").append(open).append('\n');
+            for (Stmt st : methods.get(m)) {
+                sb.append(indent).append(indent).append(st.render());
+                if (alternateStyle) sb.append(" // step");
+                sb.append('\n');
+            }
+            sb.append(indent).append(indent).append("return a;\n");
+            sb.append(indent).append("}\n\n");
+        }
+        if (depth > 0) {
+            sb.append(indent).append("public int deep(int a)").append(open).append('\n');
+            sb.append(indent).append(indent).append("return ").append(deepExpression()).append(";\n");
+            sb.append(indent).append("}\n");
+        }
+        return sb.append("}\n").toString();
+    }
+
+    /** (a + (a + (... a))) nested {@code depth} times. */
+    private String deepExpression() {
+        StringBuilder sb = new StringBuilder(depth * 6);
+        for (int d = 0; d < depth; d++) sb.append("(a + ");
+        sb.append('a');
+        for (int d = 0; d < depth; d++) sb.append(')');
+        return sb.toString();
+    }
+
+    private static void write(Path root, String pkg, String cls, String source) throws IOException {
+        Path file = root.resolve(pkg.replace('.', '/')).resolve(cls + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+    }
+}